@@ -0,0 +1,42 @@
+package com.lexer.benchmark;
+
+/** Generated source code shaped like test.pll with one kind of token dominating
+ */
+public final class Corpus {
+
+    public enum Shape {
+        IDENTIFIER("    value_one = first_name + last_name2 * counter_x / total_count;\n"),
+        NUMERIC("    x = 1234567 + 3.14159 * 42 - 0.5 + 1000000 / 7.25 % 99;\n"),
+        STRING("    print(\"Hello World!\", \"a longer string literal with spaces\", \"Result = \");\n"),
+        COMMENT("// custom function, returns one to the caller after the checks pass\n    return 1;\n"),
+        OPERATOR("    a+=b; c-=d; e==f; g!=h; i<=j; k>=l; m&&n; o||p; q++; r--; s*=t; u/=v;\n");
+
+        private final String line;
+
+        Shape(String line) {
+            this.line = line;
+        }
+    }
+
+
+    private Corpus() {
+    }
+
+
+    /** Generate ASCII source code of at least the given size
+     * @param shape
+     * @param size in bytes
+     * @return String
+     */
+    public static String generate(Shape shape, int size) {
+        StringBuilder sourceCode = new StringBuilder(size + 256);
+        sourceCode.append("include io;\n\nfunction main() : int {\n");
+
+        while (sourceCode.length() < size - 2) {
+            sourceCode.append(shape.line);
+        }
+
+        sourceCode.append("}\n");
+        return sourceCode.toString();
+    }
+}
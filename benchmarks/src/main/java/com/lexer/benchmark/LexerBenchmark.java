@@ -0,0 +1,100 @@
+package com.lexer.benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lexer.Lexer;
+import com.lexer.Token;
+import com.lexer.TokenStream;
+
+/** Lexer throughput over generated corpora.
+ * tokens and bytes are reported as rates next to the call rate,
+ * run with -prof gc for the allocation rate:
+ *
+ *     mvn -f benchmarks/pom.xml package
+ *     java -jar benchmarks/target/benchmarks.jar -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx8g" })
+@State(Scope.Benchmark)
+public class LexerBenchmark {
+
+    @Param({ "IDENTIFIER", "NUMERIC", "STRING", "COMMENT", "OPERATOR" })
+    public Corpus.Shape shape;
+
+    @Param({ "1024", "1048576", "104857600" })
+    public int size;
+
+    private String sourceCode;
+
+
+    /** Tokens and bytes lexed, normalized by time
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long tokens;
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.tokens = 0;
+            this.bytes = 0;
+        }
+    }
+
+
+    @Setup(Level.Trial)
+    public void generate() {
+        this.sourceCode = Corpus.generate(this.shape, this.size);
+    }
+
+
+    @Benchmark
+    public ArrayList<Token> tokenize(Counters counters) {
+        ArrayList<Token> tokens = new Lexer(this.sourceCode).tokenize();
+
+        counters.tokens += tokens.size();
+        counters.bytes += this.sourceCode.length();
+        return tokens;
+    }
+
+
+    @Benchmark
+    public TokenStream tokenizeCompact(Counters counters) {
+        TokenStream tokens = new Lexer(this.sourceCode).tokenizeCompact();
+
+        counters.tokens += tokens.size();
+        counters.bytes += this.sourceCode.length();
+        return tokens;
+    }
+
+
+    @Benchmark
+    public TokenStream tokenizeTableDriven(Counters counters) {
+        Lexer lexer = new Lexer(this.sourceCode);
+        lexer.setEngine(Lexer.Engine.TABLE_DRIVEN);
+        TokenStream tokens = lexer.tokenizeCompact();
+
+        counters.tokens += tokens.size();
+        counters.bytes += this.sourceCode.length();
+        return tokens;
+    }
+}
@@ -0,0 +1,334 @@
+package com.lexer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+
+/** Lexes a whole project starting from its root files.
+ * the include directives at the top of every file are followed to find
+ * the other files, every distinct file is lexed once on a fork/join pool
+ */
+public final class BatchLexer {
+    static final String EXTENSION = ".pll";
+
+    private final ForkJoinPool pool;
+    private final List<Path> includePaths;
+    private final TokenCache cache;
+
+
+    /** BatchLexer construct using the common fork/join pool
+     * @param includePaths directories searched for included files
+     * after the directory of the including file
+     * @return 
+     */
+    public BatchLexer(List<Path> includePaths) {
+        this(ForkJoinPool.commonPool(), includePaths);
+    }
+
+
+    /** BatchLexer construct
+     * @param pool
+     * @param includePaths directories searched for included files
+     * after the directory of the including file
+     * @return 
+     */
+    public BatchLexer(ForkJoinPool pool, List<Path> includePaths) {
+        this(pool, includePaths, null);
+    }
+
+
+    /** BatchLexer construct taking the tokens of unchanged files from a cache
+     * @param pool
+     * @param includePaths directories searched for included files
+     * after the directory of the including file
+     * @param cache tokens of earlier runs, null to lex every file
+     * @return 
+     */
+    public BatchLexer(ForkJoinPool pool, List<Path> includePaths, TokenCache cache) {
+        this.pool = pool;
+        this.includePaths = new ArrayList<Path>(includePaths);
+        this.cache = cache;
+    }
+
+
+    /** Lex the root files and every file they include
+     * @param roots
+     * @return Result
+     */
+    public Result lex(Collection<Path> roots) {
+        return this.run(roots, new Result(false));
+    }
+
+
+    /** Find the include graph of the root files without lexing them,
+     * only the include directives at the start of every file are scanned.
+     * getTokens() of the result is empty
+     * @param roots
+     * @return Result
+     */
+    public Result scanIncludes(Collection<Path> roots) {
+        return this.run(roots, new Result(true));
+    }
+
+
+    private Result run(Collection<Path> roots, Result result) {
+        // completes when every file task below it has completed
+        this.pool.invoke(new CountedCompleter<Void>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void compute() {
+                for (Path root : roots) {
+                    BatchLexer.this.schedule(this, result, root.toAbsolutePath().normalize());
+                }
+
+                this.tryComplete();
+            }
+        });
+
+        result.findCycles();
+        return result;
+    }
+
+
+    /** Start the task of a file unless the file is already taken, tasks
+     * are forked and never joined so long include chains do not nest
+     * @param parent completes after the task
+     * @param result
+     * @param path
+     */
+    private void schedule(CountedCompleter<?> parent, Result result, Path path) {
+        if (result.includes.putIfAbsent(path, Collections.<Path>emptyList()) != null) {
+            return;
+        }
+
+        parent.addToPendingCount(1);
+        new FileTask(parent, result, path).fork();
+    }
+
+
+    /** Find the file of an include directive
+     * @param from the including file
+     * @param name
+     * @return Path or null when there is no such file
+     */
+    private Path resolve(Path from, String name) {
+        Path candidate = from.resolveSibling(name + EXTENSION);
+        if (Files.isRegularFile(candidate)) {
+            return candidate.normalize();
+        }
+
+        for (Path directory : this.includePaths) {
+            candidate = directory.resolve(name + EXTENSION);
+            if (Files.isRegularFile(candidate)) {
+                return candidate.toAbsolutePath().normalize();
+            }
+        }
+
+        return null;
+    }
+
+
+    /** Get the names of the include directives at the start of a file
+     * @param tokens
+     * @return List<String>
+     */
+    static List<String> includeNames(TokenStream tokens) {
+        List<String> names = new ArrayList<String>();
+        int i = 0;
+
+        while (i + 2 < tokens.size() &&
+            tokens.getTokenClass(i) == TokenClass.KEYWORD_INCLUDE &&
+            tokens.getTokenClass(i + 1) == TokenClass.IDENTIFIER &&
+            tokens.getTokenClass(i + 2) == TokenClass.SEMICOLON) {
+            names.add(tokens.getValue(i + 1));
+            i += 3;
+        }
+
+        return names;
+    }
+
+
+    /** Lexes one file and then starts the tasks of the files it includes
+     */
+    private final class FileTask extends CountedCompleter<Void> {
+        private static final long serialVersionUID = 1L;
+
+        private final Result result;
+        private final Path path;
+
+
+        FileTask(CountedCompleter<?> parent, Result result, Path path) {
+            super(parent);
+            this.result = result;
+            this.path = path;
+        }
+
+
+        @Override
+        public void compute() {
+            List<String> names;
+            try {
+                if (this.result.includesOnly) {
+                    names = Lexer.fromFile(this.path).scanIncludes();
+                } else {
+                    TokenStream tokens;
+                    if (BatchLexer.this.cache == null) {
+                        tokens = Lexer.fromFile(this.path).tokenizeCompact();
+                    } else {
+                        tokens = BatchLexer.this.cache.tokenize(this.path);
+                    }
+
+                    this.result.tokens.put(this.path, tokens);
+                    names = BatchLexer.includeNames(tokens);
+                }
+            } catch (IOException e) {
+                this.result.failures.put(this.path, e);
+                this.tryComplete();
+                return;
+            }
+
+            List<Path> includes = new ArrayList<Path>();
+            List<String> unresolved = new ArrayList<String>();
+
+            for (String name : names) {
+                Path include = BatchLexer.this.resolve(this.path, name);
+
+                if (include == null) {
+                    unresolved.add(name);
+                    continue;
+                }
+
+                if (!includes.contains(include)) {
+                    includes.add(include);
+                }
+
+                BatchLexer.this.schedule(this, this.result, include);
+            }
+
+            this.result.includes.put(this.path, Collections.unmodifiableList(includes));
+            if (!unresolved.isEmpty()) {
+                this.result.unresolved.put(this.path, Collections.unmodifiableList(unresolved));
+            }
+
+            this.tryComplete();
+        }
+    }
+
+
+    /** Tokens of every file and the include graph between them
+     */
+    public static final class Result {
+        private static final int DONE = -1;     // state of a file the search has left
+
+        private final Map<Path, TokenStream> tokens = new ConcurrentHashMap<Path, TokenStream>();
+        private final Map<Path, List<Path>> includes = new ConcurrentHashMap<Path, List<Path>>();
+        private final Map<Path, List<String>> unresolved = new ConcurrentHashMap<Path, List<String>>();
+        private final Map<Path, IOException> failures = new ConcurrentHashMap<Path, IOException>();
+        private final List<List<Path>> cycles = new ArrayList<List<Path>>();
+        private final boolean includesOnly;
+
+
+        private Result(boolean includesOnly) {
+            this.includesOnly = includesOnly;
+        }
+
+
+        /** Get the tokens of every lexed file by absolute normalized path
+         * @return Map<Path, TokenStream>
+         */
+        public Map<Path, TokenStream> getTokens() {
+            return Collections.unmodifiableMap(this.tokens);
+        }
+
+
+        /** Get the files each file includes, in directive order
+         * @return Map<Path, List<Path>>
+         */
+        public Map<Path, List<Path>> getIncludes() {
+            return Collections.unmodifiableMap(this.includes);
+        }
+
+
+        /** Get the include names no file was found for
+         * @return Map<Path, List<String>>
+         */
+        public Map<Path, List<String>> getUnresolved() {
+            return Collections.unmodifiableMap(this.unresolved);
+        }
+
+
+        /** Get the files that could not be read
+         * @return Map<Path, IOException>
+         */
+        public Map<Path, IOException> getFailures() {
+            return Collections.unmodifiableMap(this.failures);
+        }
+
+
+        /** Get the include cycles, each cycle lists its files
+         * in include order starting from the first file found
+         * @return List<List<Path>>
+         */
+        public List<List<Path>> getCycles() {
+            return Collections.unmodifiableList(this.cycles);
+        }
+
+
+        /** Depth first search of the include graph, the path is kept in lists
+         * rather than on the call stack so long include chains do not overflow it
+         */
+        private void findCycles() {
+            Map<Path, Integer> states = new HashMap<Path, Integer>();   // index on the path, DONE once left
+            List<Path> path = new ArrayList<Path>();
+            List<Iterator<Path>> next = new ArrayList<Iterator<Path>>();    // includes left of every file on the path
+
+            for (Path file : this.includes.keySet()) {
+                this.enter(file, states, path, next);
+
+                while (!path.isEmpty()) {
+                    int last = path.size() - 1;
+
+                    if (next.get(last).hasNext()) {
+                        this.enter(next.get(last).next(), states, path, next);
+                    } else {
+                        states.put(path.remove(last), DONE);
+                        next.remove(last);
+                    }
+                }
+            }
+        }
+
+
+        /** Step to a file, a file already on the path closes a cycle
+         * @param file
+         * @param states
+         * @param path
+         * @param next
+         */
+        private void enter(Path file, Map<Path, Integer> states, List<Path> path, List<Iterator<Path>> next) {
+            Integer state = states.get(file);
+
+            if (state != null) {
+                if (state != DONE) {
+                    this.cycles.add(Collections.unmodifiableList(new ArrayList<Path>(path.subList(state, path.size()))));
+                }
+                return;
+            }
+
+            states.put(file, path.size());
+            path.add(file);
+            next.add(this.includes.getOrDefault(file, Collections.<Path>emptyList()).iterator());
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.lexer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/** Source over UTF-8 encoded bytes, no decoding is done while scanning.
+ * ASCII bytes are the chars themselves, the other bytes never match a token class
+ * so multi-byte sequences only pass through string literals and comments.
+ * positions and columns count bytes.
+ * blanks, comments and string bodies are searched eight bytes at a time
+ */
+class ByteBufferSource extends Source {
+    private static final long LOW_BITS = 0x7f7f7f7f7f7f7f7fL;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long SPACES = 0x2020202020202020L;
+    private static final long TABS = 0x0909090909090909L;
+    private static final long NEW_LINES = 0x0a0a0a0a0a0a0a0aL;
+    private static final long RETURNS = 0x0d0d0d0d0d0d0d0dL;
+    private static final long QUOTES = 0x2222222222222222L;
+
+    // read for an A0 byte that is not part of a non-breaking space
+    private static final char NOT_BLANK = 0xfffd;
+
+    private final ByteBuffer buffer;
+
+
+    ByteBufferSource(ByteBuffer buffer) {
+        // the first byte of a word is the most significant one
+        this.buffer = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+    }
+
+
+    @Override
+    char charAt(int position) {
+        if (position >= this.buffer.limit()) {
+            return END;
+        }
+
+        int b = this.buffer.get(position) & 0xff;
+
+        // C2 A0 is the non-breaking space, read both bytes as a blank
+        if (b == 0xc2 && position + 1 < this.buffer.limit() && (this.buffer.get(position + 1) & 0xff) == 0xa0) {
+            return 160;
+        } else if (b == 0xa0 && (position == 0 || (this.buffer.get(position - 1) & 0xff) != 0xc2)) {
+            return NOT_BLANK;   // A0 ending another char, as in C3 A0
+        }
+
+        return (char) b;
+    }
+
+
+    @Override
+    boolean isEnd(int position) {
+        return position >= this.buffer.limit();
+    }
+
+
+    /** Mark the bytes of a word that are equal to the bytes of a pattern
+     * @param word
+     * @param pattern
+     * @return long the high bit of every equal byte set, all other bits clear
+     */
+    private static long equalBytes(long word, long pattern) {
+        long bits = word ^ pattern;
+
+        // no carry crosses a byte so only the equal bytes are marked
+        return ~(((bits & LOW_BITS) + LOW_BITS) | bits | LOW_BITS);
+    }
+
+
+    // index of the first byte marked by equalBytes()
+    private static int firstMarked(long marks) {
+        return Long.numberOfLeadingZeros(marks) >>> 3;
+    }
+
+
+    @Override
+    int skipBlanks(int position) {
+        int limit = this.buffer.limit();
+
+        while (true) {
+            while (position + 8 <= limit) {
+                long word = this.buffer.getLong(position);
+                long blanks = equalBytes(word, SPACES) | equalBytes(word, NEW_LINES) |
+                    equalBytes(word, TABS) | equalBytes(word, RETURNS);
+
+                if (blanks != HIGH_BITS) {
+                    position += firstMarked(~blanks & HIGH_BITS);
+                    break;
+                }
+
+                position += 8;
+            }
+
+            // the rarer blanks and the last bytes one at a time
+            int start = position;
+            position = super.skipBlanks(position);
+
+            if (position == start || position >= limit) {
+                return position;
+            }
+        }
+    }
+
+
+    @Override
+    int indexOfCommentEnd(int position) {
+        int limit = this.buffer.limit();
+
+        while (position + 8 <= limit) {
+            long word = this.buffer.getLong(position);
+            long ends = equalBytes(word, NEW_LINES) | equalBytes(word, RETURNS) | equalBytes(word, 0);
+
+            if (ends != 0) {
+                return position + firstMarked(ends);
+            }
+
+            position += 8;
+        }
+
+        return super.indexOfCommentEnd(position);
+    }
+
+
+    @Override
+    int indexOfQuote(int position) {
+        int limit = this.buffer.limit();
+
+        while (position + 8 <= limit) {
+            long quotes = equalBytes(this.buffer.getLong(position), QUOTES);
+
+            if (quotes != 0) {
+                return position + firstMarked(quotes);
+            }
+
+            position += 8;
+        }
+
+        return super.indexOfQuote(position);
+    }
+
+
+    /** Append ASCII values byte by byte, only values with other
+     * chars are decoded through a string
+     */
+    @Override
+    void appendTo(StringBuilder builder, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (this.buffer.get(i) < 0) {
+                builder.append(this.substring(i, end));
+                return;
+            }
+
+            builder.append((char) this.buffer.get(i));
+        }
+    }
+
+
+    @Override
+    String substring(int start, int end) {
+        ByteBuffer slice = this.buffer.duplicate();
+        slice.position(start);
+        slice.limit(end);
+
+        return StandardCharsets.UTF_8.decode(slice).toString();
+    }
+}
@@ -0,0 +1,194 @@
+package com.lexer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/** Reader of compressed UTF-8 source code decoded on a thread of its own.
+ * the thread fills one block of chars while the lexer reads the other,
+ * so decompression and lexing overlap and only two blocks of the
+ * decompressed text exist at any time. the thread stops at the end of
+ * input, when the reader is closed or when the reader is collected
+ */
+class DecompressingReader extends Reader {
+    static final int BLOCK_SIZE = 1 << 16;
+
+    private final Blocks blocks = new Blocks();
+    private Block current;      // block being read, null when none is taken
+    private int position = 0;
+
+
+    /** DecompressingReader construct, the input is closed by
+     * the decoding thread when it stops
+     * @param input
+     * @param codec
+     */
+    DecompressingReader(InputStream input, SourceCodec codec) {
+        Thread thread = new Thread(new Decoder(input, codec, this.blocks, this), "lexer-decompress");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+
+        if (this.current == null) {
+            try {
+                this.current = this.blocks.filled.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for decompressed source code");
+            }
+
+            this.position = 0;
+        }
+
+        if (this.current.error != null) {
+            throw new IOException("cannot decompress the source code", this.current.error);
+        } else if (this.current.length < 0) {
+            return -1;  // kept as the current block, later reads end too
+        }
+
+        int count = Math.min(length, this.current.length - this.position);
+        System.arraycopy(this.current.chars, this.position, buffer, offset, count);
+        this.position += count;
+
+        // hand the block back to be filled again
+        if (this.position == this.current.length) {
+            this.blocks.empty.add(this.current);
+            this.current = null;
+        }
+
+        return count;
+    }
+
+
+    @Override
+    public void close() {
+        this.blocks.closed = true;
+    }
+
+
+    /** One buffer of decoded chars
+     */
+    private static final class Block {
+        private final char[] chars = new char[BLOCK_SIZE];
+        private int length;         // -1 at the end of input
+        private Throwable error;    // of the codec, thrown again by read()
+    }
+
+
+    /** The two blocks passed between the reader and the decoding thread,
+     * kept apart from the reader so the thread does not keep it alive
+     */
+    private static final class Blocks {
+        private final BlockingQueue<Block> empty = new ArrayBlockingQueue<Block>(2);
+        private final BlockingQueue<Block> filled = new ArrayBlockingQueue<Block>(2);
+        private volatile boolean closed = false;
+
+
+        private Blocks() {
+            this.empty.add(new Block());
+            this.empty.add(new Block());
+        }
+    }
+
+
+    /** Decompresses and decodes blocks until the end of input
+     */
+    private static final class Decoder implements Runnable {
+        private final InputStream input;
+        private final SourceCodec codec;
+        private final Blocks blocks;
+        private final WeakReference<DecompressingReader> reader;
+
+
+        Decoder(InputStream input, SourceCodec codec, Blocks blocks, DecompressingReader reader) {
+            this.input = input;
+            this.codec = codec;
+            this.blocks = blocks;
+            this.reader = new WeakReference<DecompressingReader>(reader);
+        }
+
+
+        @Override
+        public void run() {
+            Block block = null;
+
+            try (Reader decoded = new InputStreamReader(this.codec.decode(this.input), StandardCharsets.UTF_8)) {
+                while (true) {
+                    block = this.nextEmpty();
+                    if (block == null) {
+                        return;
+                    }
+
+                    // fill the whole block so the reader wakes up less often
+                    int length = 0;
+                    int read = 0;
+                    while (length < BLOCK_SIZE && (read = decoded.read(block.chars, length, BLOCK_SIZE - length)) >= 0) {
+                        length += read;
+                    }
+
+                    if (length > 0) {
+                        block.length = length;
+                        this.blocks.filled.add(block);
+                        block = null;
+                    }
+
+                    if (read < 0) {
+                        block = block == null ? this.nextEmpty() : block;
+                        if (block != null) {
+                            block.length = -1;
+                            this.blocks.filled.add(block);
+                        }
+
+                        return;
+                    }
+                }
+            } catch (Throwable e) {
+                // a codec failing in any way must not leave the reader waiting
+                block = block == null ? this.nextEmpty() : block;
+                if (block != null) {
+                    block.error = e;
+                    this.blocks.filled.add(block);
+                }
+            } finally {
+                try {
+                    this.input.close();
+                } catch (IOException e) {
+                    // nothing is read from it any more
+                }
+            }
+        }
+
+
+        /** Wait for the reader to give back a block
+         * @return Block or null when nobody reads any more
+         */
+        private Block nextEmpty() {
+            while (!this.blocks.closed && this.reader.get() != null) {
+                try {
+                    Block block = this.blocks.empty.poll(100, TimeUnit.MILLISECONDS);
+                    if (block != null) {
+                        return block;
+                    }
+                } catch (InterruptedException e) {
+                    return null;
+                }
+            }
+
+            return null;
+        }
+    }
+}
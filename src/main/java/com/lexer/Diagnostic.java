@@ -0,0 +1,71 @@
+package com.lexer;
+
+/** Problem found in the source code while lexing, reported
+ * together with the ERROR token that covers the problem text
+ */
+public final class Diagnostic {
+    private final String message;
+    private final int offset;
+    private final LineIndex lines;      // null when the numbers are known
+    private final int lineNum;
+    private final int columnNum;
+
+
+    /** Diagnostic construct
+     * @param message
+     * @param offset position of the first char of the problem text
+     * @param lines line index of the source
+     * @param lineNum
+     * @param columnNum
+     * @return
+     */
+    private Diagnostic(String message, int offset, LineIndex lines, int lineNum, int columnNum) {
+        this.message = message;
+        this.offset = offset;
+        this.lines = lines;
+        this.lineNum = lineNum;
+        this.columnNum = columnNum;
+    }
+
+
+    /** Diagnostic for a problem found in a source, the line and column
+     * are looked up now when the index forgets lines
+     * @param message
+     * @param offset position of the first char of the problem text
+     * @param lines line index of the source
+     * @return Diagnostic
+     */
+    static Diagnostic of(String message, int offset, LineIndex lines) {
+        if (lines.isWindow()) {
+            return new Diagnostic(message, offset, null, lines.lineNum(offset), lines.columnNum(offset));
+        }
+
+        return new Diagnostic(message, offset, lines, 0, 0);
+    }
+
+
+    public String getMessage() {
+        return this.message;
+    }
+
+
+    public int getOffset() {
+        return this.offset;
+    }
+
+
+    public int getLineNum() {
+        return this.lines == null ? this.lineNum : this.lines.lineNum(this.offset);
+    }
+
+
+    public int getColumnNum() {
+        return this.lines == null ? this.columnNum : this.lines.columnNum(this.offset);
+    }
+
+
+    @Override
+    public String toString() {
+        return this.getLineNum() + ":" + this.getColumnNum() + ": " + this.message;
+    }
+}
@@ -0,0 +1,296 @@
+package com.lexer;
+
+/** Source code after edits, kept as pieces of the strings it was made of
+ * so an edit only copies the lines around it. every piece holds whole
+ * lines, line and column numbers are found in the line index of the
+ * string of a piece and the count of lines before the piece
+ */
+final class EditedText implements CharSequence {
+    // pieces next to an edit shorter than this are copied into it
+    static final int SMALL_PIECE = 1 << 12;
+
+    private final String[] strings;
+    private final LineIndex[] stringLines;
+    private final int[] froms;          // position of each piece in its string
+    private final int[] starts;         // position of each piece, the length at the end
+    private final int[] firstLines;     // lines ended before each piece
+    private final int count;
+    private final Lines lines = new Lines();
+    private int last = 0;       // piece of the last lookup, text is mostly read in order
+
+
+    private EditedText(String[] strings, LineIndex[] stringLines, int[] froms, int[] lengths, int count) {
+        this.strings = strings;
+        this.stringLines = stringLines;
+        this.froms = froms;
+        this.starts = new int[count + 1];
+        this.firstLines = new int[count + 1];
+        this.count = count;
+
+        for (int i = 0; i < count; i++) {
+            LineIndex lines = stringLines[i];
+            this.starts[i + 1] = this.starts[i] + lengths[i];
+            this.firstLines[i + 1] = this.firstLines[i] + lines.lineNum(froms[i] + lengths[i]) - lines.lineNum(froms[i]);
+        }
+    }
+
+
+    /** EditedText of a whole source code string
+     * @param text
+     * @param lines line index of the text
+     * @return EditedText
+     */
+    static EditedText of(String text, LineIndex lines) {
+        return new EditedText(new String[] { text }, new LineIndex[] { lines }, new int[] { 0 }, new int[] { text.length() }, 1);
+    }
+
+
+    /** Text with a range replaced, the pieces out of the lines
+     * of the edit are shared with this text
+     * @param offset
+     * @param removedLength
+     * @param insertedText
+     * @return EditedText
+     */
+    EditedText edit(int offset, int removedLength, String insertedText) {
+        int length = this.length();
+
+        // the char before the offset is kept with it so "\r\n" is never split
+        int start = offset == 0 ? 0 : this.lineStart(offset - 1);
+        int end = this.nextLineStart(offset + removedLength);
+
+        while (start > 0 && start - this.starts[this.piece(start - 1)] < SMALL_PIECE) {
+            start = this.starts[this.piece(start - 1)];
+        }
+        while (end < length && this.starts[this.piece(end) + 1] - end < SMALL_PIECE) {
+            end = this.starts[this.piece(end) + 1];
+        }
+
+        StringBuilder middle = new StringBuilder(end - start - removedLength + insertedText.length());
+        this.appendTo(middle, start, offset);
+        middle.append(insertedText);
+        this.appendTo(middle, offset + removedLength, end);
+
+        String[] strings = new String[this.count + 2];
+        LineIndex[] stringLines = new LineIndex[this.count + 2];
+        int[] froms = new int[this.count + 2];
+        int[] lengths = new int[this.count + 2];
+        int count = 0;
+
+        for (int i = 0; i < this.count && this.starts[i] < start; i++) {
+            strings[count] = this.strings[i];
+            stringLines[count] = this.stringLines[i];
+            froms[count] = this.froms[i];
+            lengths[count++] = Math.min(this.starts[i + 1], start) - this.starts[i];
+        }
+
+        if (middle.length() > 0 || start == 0 && end == length) {
+            String text = middle.toString();
+            strings[count] = text;
+            stringLines[count] = LineIndex.of(new StringSource(text));
+            lengths[count++] = text.length();
+        }
+
+        for (int i = end == length ? this.count : this.piece(end); i < this.count; i++) {
+            int from = Math.max(this.starts[i], end);
+            strings[count] = this.strings[i];
+            stringLines[count] = this.stringLines[i];
+            froms[count] = this.froms[i] + from - this.starts[i];
+            lengths[count++] = this.starts[i + 1] - from;
+        }
+
+        return new EditedText(strings, stringLines, froms, lengths, count);
+    }
+
+
+    /** Find the piece of a position, the last piece for the length
+     * @param position
+     * @return int
+     */
+    private int piece(int position) {
+        int piece = this.last;
+
+        if (position < this.starts[piece] || position >= this.starts[piece + 1]) {
+            int low = 0;
+            int high = this.count - 1;
+
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+
+                if (this.starts[middle] <= position) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+
+            piece = low;
+            this.last = piece;
+        }
+
+        return piece;
+    }
+
+
+    /** Get the start of the line of a position
+     * @param position
+     * @return int
+     */
+    private int lineStart(int position) {
+        int piece = this.piece(position);
+        LineIndex lines = this.stringLines[piece];
+        int from = this.froms[piece];
+
+        return this.starts[piece] + lines.lineStart(lines.lineNum(from + position - this.starts[piece])) - from;
+    }
+
+
+    /** Get the start of the line after the line of a position
+     * @param position
+     * @return int the length when it is on the last line
+     */
+    private int nextLineStart(int position) {
+        int piece = this.piece(position);
+        LineIndex lines = this.stringLines[piece];
+        int from = this.froms[piece];
+        int lineNum = lines.lineNum(from + position - this.starts[piece]);
+
+        if (lineNum == lines.lineNum(from + this.starts[piece + 1] - this.starts[piece])) {
+            return this.starts[piece + 1];     // pieces end at the end of a line
+        }
+
+        return this.starts[piece] + lines.lineStart(lineNum + 1) - from;
+    }
+
+
+    private void appendTo(StringBuilder builder, int start, int end) {
+        for (int piece = this.piece(start); start < end; piece++) {
+            int to = Math.min(end, this.starts[piece + 1]);
+            int from = this.froms[piece] - this.starts[piece];
+
+            builder.append(this.strings[piece], from + start, from + to);
+            start = to;
+        }
+    }
+
+
+    /** Get the line index of the text
+     * @return LineIndex
+     */
+    LineIndex lines() {
+        return this.lines;
+    }
+
+
+    @Override
+    public int length() {
+        return this.starts[this.count];
+    }
+
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= this.length()) {
+            throw new StringIndexOutOfBoundsException("index " + index + ", length " + this.length());
+        }
+
+        int piece = this.piece(index);
+        return this.strings[piece].charAt(this.froms[piece] + index - this.starts[piece]);
+    }
+
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || start > end || end > this.length()) {
+            throw new StringIndexOutOfBoundsException("begin " + start + ", end " + end + ", length " + this.length());
+        }
+
+        int piece = this.piece(start);
+        if (end <= this.starts[piece + 1]) {
+            int from = this.froms[piece] - this.starts[piece];
+            return this.strings[piece].substring(from + start, from + end);
+        }
+
+        StringBuilder builder = new StringBuilder(end - start);
+        this.appendTo(builder, start, end);
+
+        return builder.toString();
+    }
+
+
+    @Override
+    public String toString() {
+        return this.subSequence(0, this.length()).toString();
+    }
+
+
+    /** Line numbers of the text, looked up in the piece of a position
+     */
+    private final class Lines extends LineIndex {
+
+        @Override
+        int[] lineStarts() {
+            EditedText text = EditedText.this;
+            int[] lineStarts = new int[text.firstLines[text.count] + 1];
+            int count = 1;
+
+            for (int piece = 0; piece < text.count; piece++) {
+                LineIndex lines = text.stringLines[piece];
+                int from = text.froms[piece];
+                int to = from + text.starts[piece + 1] - text.starts[piece];
+
+                for (int lineNum = lines.lineNum(from) + 1; lineNum <= lines.lineNum(to); lineNum++) {
+                    lineStarts[count++] = text.starts[piece] + lines.lineStart(lineNum) - from;
+                }
+            }
+
+            return lineStarts;
+        }
+
+
+        @Override
+        int lineNum(int position) {
+            EditedText text = EditedText.this;
+            int piece = text.piece(position);
+            LineIndex lines = text.stringLines[piece];
+            int from = text.froms[piece];
+
+            return text.firstLines[piece] + lines.lineNum(from + position - text.starts[piece]) - lines.lineNum(from) + 1;
+        }
+
+
+        @Override
+        int lineStart(int lineNum) {
+            EditedText text = EditedText.this;
+            int low = 0;
+            int high = text.count - 1;
+
+            // last piece starting at or before the line
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+
+                if (text.firstLines[middle] < lineNum) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+
+            LineIndex lines = text.stringLines[low];
+            int from = text.froms[low];
+
+            return text.starts[low] + lines.lineStart(lines.lineNum(from) + lineNum - 1 - text.firstLines[low]) - from;
+        }
+
+
+        @Override
+        int columnNum(int position) {
+            EditedText text = EditedText.this;
+            int piece = text.piece(position);
+            LineIndex lines = text.stringLines[piece];
+            int start = text.froms[piece] + position - text.starts[piece];
+
+            return start - lines.lineStart(lines.lineNum(start)) + 1;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.lexer;
+
+/** Re-lexes an edited source code starting from the tokens
+ * of the previous version. lexing restarts at the last token that ends
+ * before the edit and stops as soon as the lexer reaches the end of
+ * an old token after the edit. the old text and tokens around the edit
+ * are shared with the new version rather than copied, the tokens after
+ * it are moved when they are read, so an edit costs about the same in
+ * a small file and a large one
+ */
+public final class IncrementalLexer {
+    // runs of shared tokens next to an edit shorter than this are copied into it
+    static final int SMALL_RUN = 256;
+
+    private IncrementalLexer() {
+    }
+
+
+    /** Apply an edit to the source code of a token stream
+     * @param previous tokens of a source code string, from Lexer.tokenizeCompact() or relex()
+     * @param offset position of the edit in the previous source code
+     * @param removedLength number of chars removed at the offset
+     * @param insertedText text inserted at the offset
+     * @return TokenStream tokens of the edited source code
+     */
+    public static TokenStream relex(TokenStream previous, int offset, int removedLength, String insertedText) {
+        int last = previous.size() - 1;
+        CharSequence oldSource = previous.getText();
+
+        if (!previous.isSourceText() || !(oldSource instanceof String || oldSource instanceof EditedText) ||
+            previous.getTokenClass(last) != TokenClass.END_OF_INPUT) {
+            throw new IllegalArgumentException("token stream does not hold a complete source code string");
+        }
+
+        if (offset < 0 || removedLength < 0 || offset + removedLength > oldSource.length()) {
+            throw new StringIndexOutOfBoundsException("edit [" + offset + ", " + (offset + removedLength) + ") of length " + oldSource.length());
+        }
+
+        EditedText oldText = oldSource instanceof EditedText ? (EditedText) oldSource :
+            EditedText.of((String) oldSource, previous.getLines());
+        EditedText sourceCode = oldText.edit(offset, removedLength, insertedText);
+        LineIndex lines = sourceCode.lines();
+        int positionOffset = insertedText.length() - removedLength;
+        int editEnd = offset + insertedText.length();
+
+        int keep = IncrementalLexer.lastTokenBefore(previous, offset, last);
+        int copyFrom = keep + 1;
+        while (copyFrom > 0 && copyFrom - previous.runStart(copyFrom - 1) < SMALL_RUN) {
+            copyFrom = previous.runStart(copyFrom - 1);
+        }
+
+        // the tokens lexed again, with the small runs around them
+        TokenStream middle = new TokenStream(sourceCode, lines);
+        middle.addAll(previous, copyFrom, keep + 1, 0);
+        Lexer lexer = new Lexer(sourceCode, keep < 0 ? 0 : previous.getEnd(keep), keep >= 0);
+
+        int old = keep + 1;
+        int shareFrom = previous.size();
+        while (lexer.advanceTo(middle) != TokenClass.END_OF_INPUT) {
+            int position = lexer.getPosition();
+            if (position < editEnd) {
+                continue;
+            }
+
+            int oldPosition = position - positionOffset;
+            while (old < last && previous.getEnd(old) < oldPosition) {
+                old++;
+            }
+
+            if (old < last && previous.getEnd(old) == oldPosition) {
+                // the lexer is where it was after the old token, the rest is the same
+                shareFrom = old + 1;
+                break;
+            }
+        }
+
+        int copyTo = shareFrom;
+        while (copyTo < previous.size() && previous.runEnd(copyTo) - copyTo < SMALL_RUN) {
+            copyTo = previous.runEnd(copyTo);
+        }
+        middle.addAll(previous, shareFrom, copyTo, positionOffset);
+
+        if (copyFrom == 0 && copyTo == previous.size()) {
+            return middle;
+        }
+
+        TokenStream tokens = new TokenStream(sourceCode, lines);
+        tokens.addShared(previous, 0, copyFrom, 0);
+        tokens.addShared(middle, 0, middle.size(), 0);
+        tokens.addShared(previous, copyTo, previous.size(), positionOffset);
+
+        return tokens;
+    }
+
+
+    /** Binary search for the last token that was scanned without
+     * looking at the char at the offset, the lexer looks one char
+     * past the end of a token at most
+     * @param tokens
+     * @param offset
+     * @param last index of END_OF_INPUT
+     * @return int index or -1
+     */
+    private static int lastTokenBefore(TokenStream tokens, int offset, int last) {
+        int low = 0;
+        int high = last - 1;
+        int found = -1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+
+            if (tokens.getEnd(middle) + 1 < offset) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        return found;
+    }
+}
@@ -0,0 +1,49 @@
+package com.lexer;
+
+/** Read only view of a range of the source text,
+ * no chars are copied until toString() is called
+ */
+final class Lexeme implements CharSequence {
+    private final CharSequence text;
+    private final int start;
+    private final int length;
+
+
+    Lexeme(CharSequence text, int start, int length) {
+        this.text = text;
+        this.start = start;
+        this.length = length;
+    }
+
+
+    @Override
+    public int length() {
+        return this.length;
+    }
+
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= this.length) {
+            throw new StringIndexOutOfBoundsException(index);
+        }
+
+        return this.text.charAt(this.start + index);
+    }
+
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > this.length || start > end) {
+            throw new StringIndexOutOfBoundsException("range [" + start + ", " + end + ") of length " + this.length);
+        }
+
+        return new Lexeme(this.text, this.start + start, end - start);
+    }
+
+
+    @Override
+    public String toString() {
+        return this.text.subSequence(this.start, this.start + this.length).toString();
+    }
+}
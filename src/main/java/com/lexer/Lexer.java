@@ -1,6 +1,28 @@
 package com.lexer;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
 enum TokenClass
@@ -56,14 +78,45 @@ enum TokenClass
         IDENTIFIER, // [_a-zA-Z][_a-zA-Z0-9]*
         DOUBLE, // [0-9]*\.[0-9]+
         INTEGER, // [0-9]+
-        STRING // "[^"\n]*"
+        STRING, // "[^"\n]*"
+        ERROR // text that is not a token, only with error recovery
     };
 
 public class Lexer {    
-    String sourceCode = "";
+    /** Scanner implementations, both produce the same tokens
+     */
+    public enum Engine {
+        HAND_WRITTEN,   // chains of char checks and keyword string comparisons
+        TABLE_DRIVEN    // char class and transition tables, no strings per token
+    }
+
+    // changes whenever the tokens produced for the same input change,
+    // tokens cached by other versions are not used
+    static final int VERSION = 2;
+
+    // token classes whose text is kept as the token value
+    private static final EnumSet<TokenClass> VALUE_CLASSES = EnumSet.of(
+        TokenClass.INTEGER, TokenClass.DOUBLE, TokenClass.STRING, TokenClass.IDENTIFIER,
+        TokenClass.KEYWORD_FUNCTION, TokenClass.KEYWORD_RETURN, TokenClass.KEYWORD_IF, TokenClass.KEYWORD_ELSE,
+        TokenClass.KEYWORD_WHILE, TokenClass.KEYWORD_INT, TokenClass.KEYWORD_STR, TokenClass.KEYWORD_BOOL,
+        TokenClass.KEYWORD_DOUBLE, TokenClass.KEYWORD_TRUE, TokenClass.KEYWORD_FALSE, TokenClass.KEYWORD_INCLUDE,
+        TokenClass.ERROR);
+
+    private Source source;
+    private Engine engine = Engine.HAND_WRITTEN;
     private int position = 0;
-    private int lineNum = 1;
-    private int columnNum = 1;
+    private int tokenStart = 0;
+    private int valueStart = 0;
+    private int valueEnd = 0;
+    private long digits = 0;            // digits of the last number literal
+    private int fractionDigits = 0;
+    private boolean started = false;
+    private boolean finished = false;
+    private LexerMetrics.Recorder recorder;     // null unless metrics are collected
+    private SymbolTable symbols;                // null unless identifiers are interned
+    private int symbol = -1;                    // ID of the last identifier
+    private boolean errorRecovery = false;
+    private final List<Diagnostic> diagnostics = new ArrayList<Diagnostic>();
 
     
     /** Lexer construct 
@@ -71,30 +124,205 @@ public class Lexer {
      * @return 
      */
     public Lexer(String sourceCode) {
-        this.sourceCode = sourceCode;
+        this.source = new StringSource(sourceCode);
+    }
+
+
+    /** Lexer construct for streamed source code, chars are pulled
+     * from the reader on demand through a fixed size buffer.
+     * the reader is not closed by the lexer
+     * @param reader
+     * @return 
+     */
+    public Lexer(Reader reader) {
+        this(reader, ReaderSource.DEFAULT_BUFFER_SIZE);
+    }
+
+
+    /** Lexer construct for streamed source code
+     * @param reader
+     * @param bufferSize initial buffer size in chars
+     * @return 
+     */
+    public Lexer(Reader reader, int bufferSize) {
+        this.source = new ReaderSource(reader, bufferSize);
+    }
+
+
+    /** Lexer construct for UTF-8 source code read from a channel.
+     * the channel is not closed by the lexer
+     * @param channel
+     * @return 
+     */
+    public Lexer(ReadableByteChannel channel) {
+        this(Channels.newReader(channel, StandardCharsets.UTF_8));
+    }
+
+
+    Lexer(Source source) {
+        this.source = source;
+    }
+
+
+    /** Lexer construct resuming inside the source code
+     * @param sourceCode
+     * @param position
+     * @param started true when position is the last char of a token,
+     * false when it is the first char to scan
+     * @return 
+     */
+    Lexer(CharSequence sourceCode, int position, boolean started) {
+        this.source = new StringSource(sourceCode);
+        this.position = position;
+        this.started = started;
+    }
+
+
+    /** Lexer for a UTF-8 source file mapped into memory, the file
+     * is scanned in place without copying or decoding it.
+     * positions and columns count bytes
+     * @param path
+     * @return Lexer
+     * @throws IOException
+     */
+    public static Lexer fromFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("source file is too large to map: " + path);
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return Lexer.fromUtf8(buffer);
+        }
+    }
+
+
+    /** Lexer for UTF-8 source code in a byte array, the bytes are
+     * scanned without decoding them, only token values are decoded.
+     * positions and columns count bytes
+     * @param sourceCode
+     * @return Lexer
+     */
+    public static Lexer fromUtf8(byte[] sourceCode) {
+        return Lexer.fromUtf8(ByteBuffer.wrap(sourceCode));
+    }
+
+
+    /** Lexer for UTF-8 source code between the position and the limit
+     * of a buffer, the bytes are scanned without decoding them.
+     * positions and columns count bytes from the buffer position,
+     * the position of the buffer is not changed
+     * @param sourceCode
+     * @return Lexer
+     */
+    public static Lexer fromUtf8(ByteBuffer sourceCode) {
+        return new Lexer(new ByteBufferSource(sourceCode.slice()));
+    }
+
+
+    /** Lexer for compressed UTF-8 source code, such as gzip files with
+     * SourceCodec.GZIP. decompression runs on a thread of its own one
+     * block ahead of the lexer, the decompressed text is never held whole.
+     * the input is closed once the end of input is decompressed
+     * @param input
+     * @param codec
+     * @return Lexer
+     */
+    public static Lexer fromCompressed(InputStream input, SourceCodec codec) {
+        return new Lexer(new DecompressingReader(input, codec), DecompressingReader.BLOCK_SIZE);
     }
     
     
+    /** Select the scanner implementation used for the following tokens
+     * @param engine
+     */
+    public void setEngine(Engine engine) {
+        this.engine = engine;
+    }
+
+
+    /** Start over with other source code, the engine, error recovery
+     * and metrics settings are kept. a lexer that is reset for every input
+     * and gives its tokens to a TokenSink allocates nothing per input or
+     * token, with either engine. the chars must not change
+     * while tokens of them are in use
+     * @param sourceCode
+     */
+    public void reset(CharSequence sourceCode) {
+        if (this.source instanceof StringSource) {
+            ((StringSource) this.source).reset(sourceCode);
+        } else {
+            this.source = new StringSource(sourceCode);
+        }
+
+        this.position = 0;
+        this.tokenStart = 0;
+        this.valueStart = 0;
+        this.valueEnd = 0;
+        this.started = false;
+        this.finished = false;
+        this.diagnostics.clear();
+
+        if (this.recorder != null) {
+            this.recorder.reset(0);
+        }
+    }
+
+
+    /** Select what happens at text that is not a token. without error
+     * recovery lexing ends there with END_OF_INPUT, with error recovery
+     * an ERROR token covers the text, a diagnostic is recorded and lexing
+     * goes on after it
+     * @param errorRecovery
+     */
+    public void setErrorRecovery(boolean errorRecovery) {
+        this.errorRecovery = errorRecovery;
+    }
+
+
+    /** Get the diagnostics of the ERROR tokens so far
+     * @return List<Diagnostic>
+     */
+    public List<Diagnostic> getDiagnostics() {
+        return Collections.unmodifiableList(this.diagnostics);
+    }
+
+
+    /** Collect the counts of the following tokens, they are added to
+     * the metrics when the end of input is reached
+     * @param metrics null to stop collecting
+     */
+    public void setMetrics(LexerMetrics metrics) {
+        if (metrics == null) {
+            this.recorder = null;
+        } else {
+            this.recorder = metrics.recorder(this.started ? this.position + 1 : this.position);
+        }
+    }
+
+
+    /** Intern the following identifiers into a symbol table, their
+     * tokens carry the symbol ID and share the name of the table
+     * @param symbols may be shared with other lexers, null to stop interning
+     */
+    public void setSymbolTable(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+
     /** Get the next char of the source code string
-     * increment position ad column
-     * @return char
+     * increment position, lines and columns are not tracked here.
+     * the position stops at the end of input
+     * @return char or Source.END at the end of input
      */
     private char nextChar() {
-        try {
-            char chr = this.sourceCode.charAt(this.position);
-            if (Lexer.isNewLine(chr)) {
-                this.position++;
-                this.lineNum++;
-                this.columnNum = 0;
-            } else {
-                this.position++;
-                this.columnNum++;
-            }
-            
-            return this.sourceCode.charAt(this.position);
-        } catch (StringIndexOutOfBoundsException e) {
-            return '\0';
+        if (this.source.isEnd(this.position)) {
+            return Source.END;
         }
+
+        this.position++;
+        return this.source.charAt(this.position);
     }
 
     
@@ -172,27 +400,162 @@ public class Lexer {
     }
 
     
-    /** Analyse source code string to genatrate tokens 
-     * this.nextChar() will be called to get the next char 
+    /** Check for the token classes that carry a value
+     * @param tokenClass
+     * @return boolean
+     */
+    static boolean hasValue(TokenClass tokenClass) {
+        return VALUE_CLASSES.contains(tokenClass);
+    }
+
+
+    /** Get the position of the last char of the previous token,
+     * lexing continues the same way from equal positions
+     * @return int
+     */
+    int getPosition() {
+        return this.started ? this.position : this.position - 1;
+    }
+
+
+    /** Scan the token after the previous one and add it to the stream
+     * @param tokens
+     * @return TokenClass
+     */
+    TokenClass advanceTo(TokenStream tokens) {
+        TokenClass tokenClass = this.advance();
+        tokens.add(tokenClass, this.source, this.valueStart, this.valueEnd, this.tokenStart, this.position,
+            this.number(tokenClass));
+
+        return tokenClass;
+    }
+
+
+    /** Scan the token after the previous one into a lookahead buffer
+     * @param tokens
+     * @return TokenClass
+     */
+    TokenClass advanceTo(TokenLookahead tokens) {
+        TokenClass tokenClass = this.advance();
+        tokens.add(tokenClass, this.source, this.valueStart, this.valueEnd, this.tokenStart, this.position,
+            this.number(tokenClass));
+
+        return tokenClass;
+    }
+
+
+    /** Get the value of a number literal just scanned, or the
+     * symbol ID plus one of an identifier
+     * @param tokenClass
+     * @return long see NumberLiteral, 0 for the other token classes
+     * and for identifiers that are not interned
+     */
+    private long number(TokenClass tokenClass) {
+        if (tokenClass == TokenClass.IDENTIFIER) {
+            return this.symbols == null ? 0 : this.symbol + 1;
+        }
+
+        if (tokenClass == TokenClass.DOUBLE && !NumberLiteral.isExact(this.digits, this.fractionDigits)) {
+            // too many digits for the exact division
+            return Double.doubleToRawLongBits(Double.parseDouble(this.source.substring(this.valueStart, this.valueEnd)));
+        }
+
+        return NumberLiteral.value(tokenClass, this.digits, this.fractionDigits);
+    }
+
+
+    /** Scan the token after the previous one, the char
+     * after the previous token is skipped first
+     * @return TokenClass
+     */
+    private TokenClass advance() {
+        if (this.started) {
+            this.nextChar();    // ignore the spaces after keywords identifiers
+        }
+
+        this.started = true;
+        TokenClass tokenClass;
+        long time = this.recorder == null ? 0 : System.nanoTime();
+
+        if (this.engine == Engine.TABLE_DRIVEN) {
+            tokenClass = this.scanTokenTable();
+        } else {
+            tokenClass = this.scanToken();
+        }
+
+        this.finished = tokenClass == TokenClass.END_OF_INPUT;
+
+        if (tokenClass == TokenClass.IDENTIFIER && this.symbols != null) {
+            this.symbol = this.symbols.intern(this.source, this.valueStart, this.valueEnd);
+        }
+
+        if (this.recorder != null) {
+            this.recorder.token(tokenClass, this.tokenStart, this.finished ? this.position : this.position + 1,
+                System.nanoTime() - time);
+        }
+
+        return tokenClass;
+    }
+
+
+    /** Build the token object for the next token
      * @return Token
      */
     private Token nextToken() {
+        TokenClass tokenClass = this.advance();
+
+        LineIndex lines = this.source.lines();
+        CharSequence text = this.source.text();
+
+        // the value is a slice of the source when it stays in memory, null then
+        String value = "";
+        if (Lexer.hasValue(tokenClass)) {
+            value = text == null ? this.source.substring(this.valueStart, this.valueEnd) : null;
+        }
+
+        Token token;
+        if (lines.isWindow()) {
+            // the line may be forgotten before the token is asked for it
+            token = new Token(tokenClass, value, this.tokenStart, lines.lineNum(this.tokenStart), lines.columnNum(this.tokenStart));
+        } else if (value != null) {
+            token = new Token(tokenClass, value, 0, value.length(), lines, this.tokenStart);
+        } else {
+            token = new Token(tokenClass, text, this.valueStart, this.valueEnd - this.valueStart, lines, this.tokenStart);
+        }
+
+        if (tokenClass == TokenClass.INTEGER || tokenClass == TokenClass.DOUBLE) {
+            token.setNumber(this.number(tokenClass));
+        } else if (tokenClass == TokenClass.IDENTIFIER && this.symbols != null) {
+            token.setSymbol(this.symbol, this.symbols.name(this.symbol));
+        }
+
+        return token;
+    }
+
+
+    /** Analyse source code string to genatrate tokens 
+     * this.nextChar() will be called to get the next char.
+     * the value of the token classes with a value is left
+     * in this.valueStart and this.valueEnd
+     * @return TokenClass
+     */
+    private TokenClass scanToken() {
         // while is for ignore mutiple blanks and new lines
         while (true) {
+            // nothing before the current char is needed any more
+            this.source.release(this.position);
+            this.tokenStart = this.position;
+
             // if the position is at the end of the string return end of input
-            if (this.position >= this.sourceCode.length()) {
-                return new Token(TokenClass.END_OF_INPUT, "", this.lineNum, this.columnNum);
+            if (this.source.isEnd(this.position)) {
+                return TokenClass.END_OF_INPUT;
             }
             
-            char chr = this.sourceCode.charAt(this.position);
+            char chr = this.source.charAt(this.position);
 
-            if (Lexer.isBlank(chr)) {
-                chr = this.nextChar();
-                continue;
-            }
-
-            if (Lexer.isNewLine(chr)) {
-                chr = this.nextChar();
+            // blanks and new lines are skipped in bulk by the source
+            if (Lexer.isBlank(chr) || Lexer.isNewLine(chr)) {
+                this.position = this.source.skipBlanks(this.position);
                 continue;
             }
             
@@ -206,7 +569,6 @@ public class Lexer {
 
                     if (!Lexer.isAlpha(chr)) {
                         this.position--;
-                        this.columnNum--;
                         break;
                     }      
                 }
@@ -217,63 +579,43 @@ public class Lexer {
 
                     if (!Lexer.isNumber(chr)) {
                         this.position--;
-                        this.columnNum--;
                         break;
                     }
                 }
 
-                String value = sourceCode.substring(start, this.position + 1);
-
-                if (value.equals("if")) {
-                    return new Token(TokenClass.KEYWORD_IF,"", this.lineNum, this.columnNum);
-                } else if (value.equals("else")) {
-                    return new Token(TokenClass.KEYWORD_ELSE,"", this.lineNum, this.columnNum);
-                } else if (value.equals("while")) {
-                    return new Token(TokenClass.KEYWORD_WHILE,"", this.lineNum, this.columnNum);
-                } else if (value.equals("int")) {
-                    return new Token(TokenClass.KEYWORD_INT,"", this.lineNum, this.columnNum);
-                } else if (value.equals("str")) {
-                    return new Token(TokenClass.KEYWORD_STR,"", this.lineNum, this.columnNum);
-                } else if (value.equals("bool")) {
-                    return new Token(TokenClass.KEYWORD_BOOL,"", this.lineNum, this.columnNum);
-                } else if (value.equals("double")) {
-                    return new Token(TokenClass.KEYWORD_DOUBLE,"", this.lineNum, this.columnNum);
-                } else if (value.equals("true")) {
-                    return new Token(TokenClass.KEYWORD_TRUE,"", this.lineNum, this.columnNum);
-                } else if (value.equals("false")) {
-                    return new Token(TokenClass.KEYWORD_FALSE,"", this.lineNum, this.columnNum);
-                } else if (value.equals("function")) {
-                    return new Token(TokenClass.KEYWORD_FUNCTION,"", this.lineNum, this.columnNum);
-                } else if (value.equals("return")) {
-                    return new Token(TokenClass.KEYWORD_RETURN,"", this.lineNum, this.columnNum);
-                } else if (value.equals("include")) {
-                    return new Token(TokenClass.KEYWORD_INCLUDE,"", this.lineNum, this.columnNum);
-                } else {
-                    return new Token(TokenClass.IDENTIFIER,"", this.lineNum, this.columnNum);
-                }
+                this.valueStart = start;
+                this.valueEnd = this.position + 1;
+
+                // compared in place, no string is created for the word
+                return ScanTables.keyword(this.source, this.valueStart, this.valueEnd);
             }
 
             // integer and real number literals,'-' followed by a number is negetive 
-            if (Lexer.isNumber(chr) || (chr == '-' && Lexer.isNumber(this.sourceCode.charAt(this.position + 1)))) {
+            if (Lexer.isNumber(chr) || (chr == '-' && Lexer.isNumber(this.source.charAt(this.position + 1)))) {
                 int start = this.position;
                 boolean isDouble = false;
 
                 if (chr == '-') {
-                    return new Token(TokenClass.OP_NEGATE, "", this.lineNum, this.columnNum);
+                    return TokenClass.OP_NEGATE;
                 }
 
+                // the value is collected while the digits are read
+                this.digits = chr - '0';
+                this.fractionDigits = 0;
+
                 while (true) {
                     chr = this.nextChar();
 
                     if (!Lexer.isNumber(chr)) {
                         this.position--;
-                        this.columnNum--;
                         break;
                     }
+
+                    this.digits = NumberLiteral.addDigit(this.digits, chr);
                 }
                 
                 // to collect numbers after decimal point
-                if (chr != '\0' && this.sourceCode.charAt(this.position + 1) == '.') {
+                if (chr != Source.END && this.source.charAt(this.position + 1) == '.') {
                     this.nextChar();
 
                     while (true) {
@@ -281,20 +623,22 @@ public class Lexer {
         
                         if (!Lexer.isNumber(chr)) {
                             this.position--;
-                            this.columnNum--;
                             break;
                         }
 
                         isDouble = true;
+                        this.digits = NumberLiteral.addDigit(this.digits, chr);
+                        this.fractionDigits++;
                     }
                 }
 
-                String value = sourceCode.substring(start, this.position + 1);
+                this.valueStart = start;
+                this.valueEnd = this.position + 1;
 
                 if (isDouble) {
-                    return new Token(TokenClass.DOUBLE, value, this.lineNum, this.columnNum);
+                    return TokenClass.DOUBLE;
                 } else {
-                    return new Token(TokenClass.INTEGER, value, this.lineNum, this.columnNum);                
+                    return TokenClass.INTEGER;
                 }
             }
 
@@ -303,176 +647,360 @@ public class Lexer {
                 this.nextChar();    // to ignore first double quote
                 int start = this.position;
 
-                while (true) {
-                    chr = this.nextChar();
+                // the last double quote is the last char of the token,
+                // the search starts after the first char of the body
+                if (!this.source.isEnd(start)) {
+                    this.position = this.source.indexOfQuote(start + 1);
+                }
 
-                    if (Lexer.isQuote(chr)) {
-                        this.position--;
-                        this.columnNum--;
-                        break;
-                    }
+                if (this.source.isEnd(this.position)) {
+                    return this.unterminatedString(start - 1);
                 }
 
-                String value = sourceCode.substring(start, this.position + 1);
-                this.nextChar();    // to ignore last double quote
+                this.valueStart = start;
+                this.valueEnd = this.position;
 
-                return new Token(TokenClass.STRING, value, this.lineNum, this.columnNum);
+                return TokenClass.STRING;
             }
 
             // single line comments, collect all until a new line 
-            if (chr == '/' && this.sourceCode.charAt(this.position + 1) == '/') {
-                boolean back = false;
-                this.nextChar();
-
-                while (true) {
-                    chr = this.nextChar();
+            if (chr == '/' && this.source.charAt(this.position + 1) == '/') {
+                long time = this.recorder == null ? 0 : System.nanoTime();
 
-                    if (Lexer.isNewLine(chr)) {
-                        this.nextChar();
-                        back = true;
-                        break;
-                    } else if (chr == '\0') {   // end of source code
-                        back = true;
-                        break;
-                    }
+                // a NUL char or the end of source code also ends the comment
+                this.position = this.source.indexOfCommentEnd(this.position + 2);
+                if (Lexer.isNewLine(this.source.charAt(this.position))) {
+                    this.nextChar();
                 }
 
-                if (back) {
-                    // when a new line hit go to top and continue
-                    // no token retuned for the comments
-                    continue;
+                if (this.recorder != null) {
+                    this.recorder.comment(System.nanoTime() - time);
                 }
+
+                // go to top and continue
+                // no token retuned for the comments
+                continue;
             }
 
             if (chr == '(') {
-                return new Token(TokenClass.LEFTPAREN, "", this.lineNum, this.columnNum);
+                return TokenClass.LEFTPAREN;
             } else if (chr == ')') {
-                return new Token(TokenClass.RIGHTPAREN, "", this.lineNum, this.columnNum);
+                return TokenClass.RIGHTPAREN;
             } else if (chr == '[') {
-                return new Token(TokenClass.LEFTSQEBRACKET, "", this.lineNum, this.columnNum);
+                return TokenClass.LEFTSQEBRACKET;
             } else if (chr == ']') {
-                return new Token(TokenClass.RIGHTSQEBRACKET, "", this.lineNum, this.columnNum);
+                return TokenClass.RIGHTSQEBRACKET;
             } else if (chr == '{') {
-                return new Token(TokenClass.LEFTBRACE, "", this.lineNum, this.columnNum);
+                return TokenClass.LEFTBRACE;
             } else if (chr == '}') {
-                return new Token(TokenClass.RIGHTBRACE, "", this.lineNum, this.columnNum);
+                return TokenClass.RIGHTBRACE;
             } else if (chr == ':') {
-                return new Token(TokenClass.COLON, "", this.lineNum, this.columnNum);
+                return TokenClass.COLON;
             } else if (chr == ',') {
-                return new Token(TokenClass.COMMA, "", this.lineNum, this.columnNum);
+                return TokenClass.COMMA;
             } else if (chr == ';') {
-                return new Token(TokenClass.SEMICOLON, "", this.lineNum, this.columnNum);
+                return TokenClass.SEMICOLON;
             }
 
             // to collect operators
             if (Lexer.isOperator(chr)) {
-                char second = this.sourceCode.charAt(this.position + 1);
-                String compoundOp = Character.toString(chr) + Character.toString(second);
+                // chr is known in each branch, only the second char is compared
+                char second = this.source.charAt(this.position + 1);
 
                 if (chr == '+') {
-                    if (compoundOp.equals("++")) {
+                    if (second == '+') {
                         this.nextChar();
-                        return new Token(TokenClass.OP_INCREMENTONE, "", this.lineNum, this.columnNum);
-                    } else if (compoundOp.equals("+=")) {
+                        return TokenClass.OP_INCREMENTONE;
+                    } else if (second == '=') {
                         this.nextChar();
-                        return new Token(TokenClass.OP_COMPUNDADD, "", this.lineNum, this.columnNum);
+                        return TokenClass.OP_COMPUNDADD;
                     } else {
-                        return new Token(TokenClass.OP_ADD, "", this.lineNum, this.columnNum);
+                        return TokenClass.OP_ADD;
                     }
                 } else if (chr == '-') {
-                    if (compoundOp.equals("--")) {
+                    if (second == '-') {
                         this.nextChar();
-                        return new Token(TokenClass.OP_DECREMENTONE, "", this.lineNum, this.columnNum);
-                    } else if (compoundOp.equals("-=")) {
+                        return TokenClass.OP_DECREMENTONE;
+                    } else if (second == '=') {
                         this.nextChar();
-                        return new Token(TokenClass.OP_COMPUNDSUBTRACT, "", this.lineNum, this.columnNum);
+                        return TokenClass.OP_COMPUNDSUBTRACT;
                     } else {
-                        return new Token(TokenClass.OP_SUBTRACT, "", this.lineNum, this.columnNum);
+                        return TokenClass.OP_SUBTRACT;
                     }
                 } else if (chr == '*') {
-                    if (compoundOp.equals("*=")) {
+                    if (second == '=') {
                         this.nextChar();
-                        return new Token(TokenClass.OP_COMPUNDMULTIPLY, "", this.lineNum, this.columnNum);
+                        return TokenClass.OP_COMPUNDMULTIPLY;
                     } else {
-                        return new Token(TokenClass.OP_MULTIPLY, "", this.lineNum, this.columnNum);
+                        return TokenClass.OP_MULTIPLY;
                     }
                 } else if (chr == '/') {
-                    if (compoundOp.equals("/=")) {
+                    if (second == '=') {
                         this.nextChar();
-                        return new Token(TokenClass.OP_COMPUNDDIVIDE, "", this.lineNum, this.columnNum);
+                        return TokenClass.OP_COMPUNDDIVIDE;
                     } else {
-                        return new Token(TokenClass.OP_DIVIDE, "", this.lineNum, this.columnNum);
+                        return TokenClass.OP_DIVIDE;
                     }
                 } else if (chr == '%') {
-                    if (compoundOp.equals("%=")) {
+                    if (second == '=') {
                         this.nextChar();
-                        return new Token(TokenClass.OP_COMPUNDMOD, "", this.lineNum, this.columnNum);
+                        return TokenClass.OP_COMPUNDMOD;
                     } else {
-                        return new Token(TokenClass.OP_MOD, "", this.lineNum, this.columnNum);
+                        return TokenClass.OP_MOD;
                     }
                 } else if (chr == '<') {
-                    if (compoundOp.equals("<=")) {
+                    if (second == '=') {
                         this.nextChar();
-                        return new Token(TokenClass.OP_LESSEQUAL, "", this.lineNum, this.columnNum);
+                        return TokenClass.OP_LESSEQUAL;
                     } else {
-                        return new Token(TokenClass.OP_LESS, "", this.lineNum, this.columnNum);
+                        return TokenClass.OP_LESS;
                     }
                 } else if (chr == '>') {
-                    if (compoundOp.equals(">=")) {
+                    if (second == '=') {
                         this.nextChar();
-                        return new Token(TokenClass.OP_GREATEREQUAL, "", this.lineNum, this.columnNum);
+                        return TokenClass.OP_GREATEREQUAL;
                     } else {
-                        return new Token(TokenClass.OP_GREATER, "", this.lineNum, this.columnNum);
+                        return TokenClass.OP_GREATER;
                     }
                 } else if (chr == '<') {
-                    if (compoundOp.equals("<=")) {
+                    if (second == '=') {
                         this.nextChar();
-                        return new Token(TokenClass.OP_LESSEQUAL, "", this.lineNum, this.columnNum);
+                        return TokenClass.OP_LESSEQUAL;
                     } else {
-                        return new Token(TokenClass.OP_LESS, "", this.lineNum, this.columnNum);
+                        return TokenClass.OP_LESS;
                     }
                 } else if (chr == '=') {
-                    if (compoundOp.equals("==")) {
+                    if (second == '=') {
                         this.nextChar();
-                        return new Token(TokenClass.OP_EQUAL, "", this.lineNum, this.columnNum);
+                        return TokenClass.OP_EQUAL;
                     } else {
-                        return new Token(TokenClass.OP_ASSIGN, "", this.lineNum, this.columnNum);
+                        return TokenClass.OP_ASSIGN;
                     }
                 } else if (chr == '!') {
-                    if (compoundOp.equals("!=")) {
+                    if (second == '=') {
                         this.nextChar();
-                        return new Token(TokenClass.OP_NOTEQUAL, "", this.lineNum, this.columnNum);
+                        return TokenClass.OP_NOTEQUAL;
                     } else {
-                        return new Token(TokenClass.OP_NOT, "", this.lineNum, this.columnNum);
+                        return TokenClass.OP_NOT;
                     }
                 } else if (chr == '&') {
-                    if (compoundOp.equals("&&")) {
+                    if (second == '&') {
                         this.nextChar();
-                        return new Token(TokenClass.OP_AND, "", this.lineNum, this.columnNum);
+                        return TokenClass.OP_AND;
                     } else {
-                        return new Token(TokenClass.OP_BITWISEAND, "", this.lineNum, this.columnNum);
+                        return TokenClass.OP_BITWISEAND;
                     }
                 } else if (chr == '|') {
-                    if (compoundOp.equals("||")) {
+                    if (second == '|') {
                         this.nextChar();
-                        return new Token(TokenClass.OP_OR, "", this.lineNum, this.columnNum);
+                        return TokenClass.OP_OR;
                     } else {
-                        return new Token(TokenClass.OP_BITWISEOR, "", this.lineNum, this.columnNum);
+                        return TokenClass.OP_BITWISEOR;
                     }
                 } else if (chr == '^') {
-                    return new Token(TokenClass.OP_BITWISEXOR, "", this.lineNum, this.columnNum);
+                    return TokenClass.OP_BITWISEXOR;
                 }
             }
 
             // didn't match any of the token clasess
-            break;
+            return this.illegalChars();
         }
-        
-        return new Token(TokenClass.END_OF_INPUT, "", this.lineNum, this.columnNum);
     }
 
     
-    /** Collect tokens to array list 
+    /** Table driven version of this.scanToken(), chars are classified
+     * through ScanTables and keywords and operators are matched
+     * without creating strings. produces the same tokens as this.scanToken()
+     * @return TokenClass
+     */
+    private TokenClass scanTokenTable() {
+        while (true) {
+            this.source.release(this.position);
+            this.tokenStart = this.position;
+
+            if (this.source.isEnd(this.position)) {
+                return TokenClass.END_OF_INPUT;
+            }
+
+            char chr = this.source.charAt(this.position);
+
+            switch (ScanTables.charClass(chr)) {
+                case ScanTables.BLANK:
+                case ScanTables.NEWLINE:
+                    this.position = this.source.skipBlanks(this.position);
+                    continue;
+
+                case ScanTables.ALPHA: {
+                    int start = this.position;
+
+                    do {
+                        chr = this.nextChar();
+                    } while (ScanTables.charClass(chr) == ScanTables.ALPHA);
+
+                    // to collect the number part of the identifiers
+                    while (ScanTables.charClass(chr) == ScanTables.DIGIT) {
+                        chr = this.nextChar();
+                    }
+
+                    this.position--;
+
+                    this.valueStart = start;
+                    this.valueEnd = this.position + 1;
+
+                    return ScanTables.keyword(this.source, start, this.valueEnd);
+                }
+
+                case ScanTables.MINUS:
+                    if (ScanTables.charClass(this.source.charAt(this.position + 1)) == ScanTables.DIGIT) {
+                        return TokenClass.OP_NEGATE;
+                    }
+
+                    return this.scanOperatorTable(chr);
+
+                case ScanTables.DIGIT: {
+                    int start = this.position;
+                    boolean isDouble = false;
+
+                    this.digits = chr - '0';
+                    this.fractionDigits = 0;
+
+                    while (ScanTables.charClass(chr = this.nextChar()) == ScanTables.DIGIT) {
+                        this.digits = NumberLiteral.addDigit(this.digits, chr);
+                    }
+
+                    this.position--;
+
+                    // to collect numbers after decimal point
+                    if (chr == '.') {
+                        this.nextChar();
+
+                        while (ScanTables.charClass(chr = this.nextChar()) == ScanTables.DIGIT) {
+                            isDouble = true;
+                            this.digits = NumberLiteral.addDigit(this.digits, chr);
+                            this.fractionDigits++;
+                        }
+
+                        this.position--;
+                    }
+
+                    this.valueStart = start;
+                    this.valueEnd = this.position + 1;
+
+                    return isDouble ? TokenClass.DOUBLE : TokenClass.INTEGER;
+                }
+
+                case ScanTables.QUOTE: {
+                    this.nextChar();    // to ignore first double quote
+                    int start = this.position;
+
+                    if (!this.source.isEnd(start)) {
+                        this.position = this.source.indexOfQuote(start + 1);
+                    }
+
+                    if (this.source.isEnd(this.position)) {
+                        return this.unterminatedString(start - 1);
+                    }
+
+                    this.valueStart = start;
+                    this.valueEnd = this.position;
+
+                    return TokenClass.STRING;
+                }
+
+                case ScanTables.SLASH:
+                    if (this.source.charAt(this.position + 1) != '/') {
+                        return this.scanOperatorTable(chr);
+                    }
+
+                    long time = this.recorder == null ? 0 : System.nanoTime();
+
+                    this.position = this.source.indexOfCommentEnd(this.position + 2);
+                    if (Lexer.isNewLine(this.source.charAt(this.position))) {
+                        this.nextChar();
+                    }
+
+                    if (this.recorder != null) {
+                        this.recorder.comment(System.nanoTime() - time);
+                    }
+
+                    continue;
+
+                case ScanTables.PUNCTUATION:
+                    return ScanTables.singleCharToken(chr);
+
+                case ScanTables.OPERATOR:
+                    return this.scanOperatorTable(chr);
+
+                default:
+                    // didn't match any of the token clasess
+                    return this.illegalChars();
+            }
+        }
+    }
+
+
+    /** String literal without a closing quote, it runs to the end of input
+     * @param quote position of the opening quote
+     * @return TokenClass ERROR with error recovery, otherwise END_OF_INPUT
+     */
+    private TokenClass unterminatedString(int quote) {
+        if (!this.errorRecovery) {
+            return TokenClass.END_OF_INPUT;
+        }
+
+        this.valueStart = quote;
+        this.valueEnd = this.position;
+        this.diagnostics.add(Diagnostic.of("unterminated string literal", quote, this.source.lines()));
+
+        return TokenClass.ERROR;
+    }
+
+
+    /** Chars that start no token, the following chars
+     * of the same kind are taken together
+     * @return TokenClass ERROR with error recovery, otherwise END_OF_INPUT
+     */
+    private TokenClass illegalChars() {
+        if (!this.errorRecovery) {
+            return TokenClass.END_OF_INPUT;
+        }
+
+        int start = this.position;
+        while (ScanTables.charClass(this.source.charAt(this.position + 1)) == ScanTables.OTHER &&
+            !this.source.isEnd(this.position + 1)) {
+            this.nextChar();
+        }
+
+        this.valueStart = start;
+        this.valueEnd = this.position + 1;
+
+        StringBuilder message = new StringBuilder(this.valueEnd - start == 1 ? "illegal character" : "illegal characters");
+        for (int position = start; position < this.valueEnd; position++) {
+            message.append(String.format(" U+%04X", (int) this.source.charAt(position)));
+        }
+        this.diagnostics.add(Diagnostic.of(message.toString(), start, this.source.lines()));
+
+        return TokenClass.ERROR;
+    }
+
+
+    /** Match a one or two char operator starting at the current char
+     * @param chr
+     * @return TokenClass
+     */
+    private TokenClass scanOperatorTable(char chr) {
+        TokenClass compound = ScanTables.compoundOperator(chr, this.source.charAt(this.position + 1));
+
+        if (compound != null) {
+            this.nextChar();
+            return compound;
+        }
+
+        return ScanTables.singleCharToken(chr);
+    }
+
+
+    /** Collect the remaining tokens to array list 
      * @return ArrayList<Token>
      */
     public ArrayList<Token> tokenize() {
@@ -482,11 +1010,230 @@ public class Lexer {
         tokens.add(token);
 
         while (token.getTokenClass() != TokenClass.END_OF_INPUT) {
-            this.nextChar();    // ignore the spaces after keywords identifiers
             token = this.nextToken();
             tokens.add(token);            
         }
 
         return tokens;
     }
-}
\ No newline at end of file
+
+
+    /** Give the remaining tokens to a sink, END_OF_INPUT included,
+     * no objects are created per token
+     * @param sink
+     * @return int number of tokens
+     */
+    public int tokenize(TokenSink sink) {
+        int count = 0;
+        TokenClass tokenClass;
+
+        do {
+            tokenClass = this.advance();
+
+            if (Lexer.hasValue(tokenClass)) {
+                sink.accept(tokenClass, this.tokenStart, this.position, this.valueStart, this.valueEnd - this.valueStart);
+            } else {
+                sink.accept(tokenClass, this.tokenStart, this.position, 0, 0);
+            }
+
+            count++;
+        } while (tokenClass != TokenClass.END_OF_INPUT);
+
+        return count;
+    }
+
+
+    /** Collect the remaining tokens to a compact token stream, no token
+     * objects are created while lexing
+     * @return TokenStream
+     */
+    public TokenStream tokenizeCompact() {
+        this.source.keepLines();
+        TokenStream tokens = new TokenStream(this.source.text(), this.source.lines());
+
+        TokenClass tokenClass = this.advanceTo(tokens);
+
+        while (tokenClass != TokenClass.END_OF_INPUT) {
+            tokenClass = this.advanceTo(tokens);
+        }
+
+        return tokens;
+    }
+
+
+    /** Collect the remaining tokens to fixed size records in direct
+     * memory outside the heap, the store must be closed after use.
+     * direct memory is limited by -XX:MaxDirectMemorySize, the heap size
+     * unless it is set, records past it fail with an OutOfMemoryError.
+     * tokenizeOffHeap(Path) holds any number of records
+     * @return TokenStore
+     */
+    public TokenStore tokenizeOffHeap() {
+        try {
+            return this.tokenizeOffHeap(null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);     // no file is opened
+        }
+    }
+
+
+    /** Collect the remaining tokens to fixed size records in a file,
+     * which is mapped into memory in segments and replaced if it exists.
+     * the records are only limited by the disk, so this is the mode for
+     * inputs with more tokens than the heap would hold
+     * @param file null to use direct memory, see tokenizeOffHeap()
+     * @return TokenStore
+     * @throws IOException
+     */
+    public TokenStore tokenizeOffHeap(Path file) throws IOException {
+        TokenStore tokens = new TokenStore(this.source, file);
+
+        try {
+            this.tokenize(tokens);
+        } catch (RuntimeException e) {
+            tokens.close();
+            throw e;
+        }
+
+        return tokens;
+    }
+
+
+    /** Scan only the include directives at the start of the remaining
+     * source, the names are the ones BatchLexer finds in the tokens.
+     * blanks and comments are skipped in bulk and scanning stops at the
+     * first token that does not continue a directive, so the rest of the
+     * source is never read. lexing continues after the last directive
+     * @return List<String> included names in directive order
+     */
+    public List<String> scanIncludes() {
+        List<String> names = new ArrayList<String>();
+        int position = this.started ? this.position + 1 : this.position;
+
+        // lexing goes back to the end of the last directive, chars
+        // after it are looked at but not released
+        this.source.hold(position);
+
+        try {
+            position = this.skipIgnored(position);
+
+            while (true) {
+                int keywordEnd = this.wordEnd(position);
+                if (ScanTables.keyword(this.source, position, keywordEnd) != TokenClass.KEYWORD_INCLUDE) {
+                    break;
+                }
+
+                int nameStart = this.skipIgnored(keywordEnd);
+                int nameEnd = this.wordEnd(nameStart);
+                if (nameEnd == nameStart || ScanTables.keyword(this.source, nameStart, nameEnd) != TokenClass.IDENTIFIER) {
+                    break;
+                }
+
+                int semicolon = this.skipIgnored(nameEnd);
+                if (this.source.isEnd(semicolon) || this.source.charAt(semicolon) != ';') {
+                    break;
+                }
+
+                names.add(this.source.substring(nameStart, nameEnd));
+                this.position = semicolon;
+                this.started = true;
+                this.source.hold(semicolon);
+
+                position = this.skipIgnored(semicolon + 1);
+            }
+        } finally {
+            this.source.hold(Integer.MAX_VALUE);
+        }
+
+        return names;
+    }
+
+
+    /** Skip blanks, line breaks and comments
+     * @param position
+     * @return int position of the first other char or the end of input
+     */
+    private int skipIgnored(int position) {
+        while (true) {
+            position = this.source.skipBlanks(position);
+
+            if (this.source.charAt(position) != '/' || this.source.charAt(position + 1) != '/') {
+                return position;
+            }
+
+            position = this.source.indexOfCommentEnd(position + 2);
+        }
+    }
+
+
+    /** Find the end of a keyword or identifier, letters followed by digits
+     * @param position
+     * @return int position after the word, the same position when there is no word
+     */
+    private int wordEnd(int position) {
+        if (!Lexer.isAlpha(this.source.charAt(position))) {
+            return position;
+        }
+
+        while (Lexer.isAlpha(this.source.charAt(position))) {
+            position++;
+        }
+
+        while (Lexer.isNumber(this.source.charAt(position))) {
+            position++;
+        }
+
+        return position;
+    }
+
+
+    /** Lazy iterator over the remaining tokens, each token is lexed
+     * when it is asked for. the last token is END_OF_INPUT.
+     * all iterators and streams of a lexer share its position
+     * @return Iterator<Token>
+     */
+    public Iterator<Token> iterator() {
+        return new Iterator<Token>() {
+            @Override
+            public boolean hasNext() {
+                return !Lexer.this.finished;
+            }
+
+            @Override
+            public Token next() {
+                if (Lexer.this.finished) {
+                    throw new NoSuchElementException();
+                }
+
+                return Lexer.this.nextToken();
+            }
+        };
+    }
+
+
+    /** Lazy spliterator over the remaining tokens
+     * @return Spliterator<Token>
+     */
+    public Spliterator<Token> spliterator() {
+        return new Spliterators.AbstractSpliterator<Token>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Token> action) {
+                if (Lexer.this.finished) {
+                    return false;
+                }
+
+                action.accept(Lexer.this.nextToken());
+                return true;
+            }
+        };
+    }
+
+
+    /** Lazy sequential stream of the remaining tokens, lexing stops
+     * as soon as the stream stops pulling
+     * @return Stream<Token>
+     */
+    public Stream<Token> stream() {
+        return StreamSupport.stream(this.spliterator(), false);
+    }
+}
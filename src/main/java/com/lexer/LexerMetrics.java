@@ -0,0 +1,301 @@
+package com.lexer;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/** Counters of the work done by lexers, one instance can be shared by
+ * any number of lexers on any threads. a lexer adds its counts when it
+ * reaches the end of input and also commits them as a "com.lexer.Lex"
+ * flight recorder event. lexers without metrics only pay a null check
+ */
+public final class LexerMetrics {
+    private static final TokenClass[] TOKEN_CLASSES = TokenClass.values();
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder scanned = new LongAdder();
+    private final LongAdder[] tokens = new LongAdder[TOKEN_CLASSES.length];
+    private final LongAdder commentNanos = new LongAdder();
+    private final LongAdder stringNanos = new LongAdder();
+    private final LongAdder numberNanos = new LongAdder();
+    private final LongAccumulator longestToken = new LongAccumulator(Math::max, 0);
+
+
+    public LexerMetrics() {
+        for (int i = 0; i < this.tokens.length; i++) {
+            this.tokens[i] = new LongAdder();
+        }
+    }
+
+
+    /** Get the counts added so far, lexers still running
+     * are not included
+     * @return Snapshot
+     */
+    public Snapshot snapshot() {
+        Map<TokenClass, Long> tokens = new EnumMap<TokenClass, Long>(TokenClass.class);
+        for (int i = 0; i < this.tokens.length; i++) {
+            long count = this.tokens[i].sum();
+            if (count > 0) {
+                tokens.put(TOKEN_CLASSES[i], count);
+            }
+        }
+
+        return new Snapshot(this.runs.sum(), this.scanned.sum(), tokens, this.commentNanos.sum(),
+            this.stringNanos.sum(), this.numberNanos.sum(), this.longestToken.get());
+    }
+
+
+    /** Counters of one lexer
+     * @param position first position the lexer scans
+     * @return Recorder
+     */
+    Recorder recorder(int position) {
+        return new Recorder(position);
+    }
+
+
+    /** Counts of one lexer, kept in plain fields while it runs
+     */
+    final class Recorder {
+        private final LexEvent event = new LexEvent();
+        private final long[] tokens = new long[TOKEN_CLASSES.length];
+        private int reached;
+        private long scanned = 0;
+        private long commentNanos = 0;
+        private long stringNanos = 0;
+        private long numberNanos = 0;
+        private long pendingComments = 0;
+        private int longestToken = 0;
+
+
+        private Recorder(int position) {
+            this.reached = position;
+            this.event.begin();
+        }
+
+
+        /** Start counting again for the next input of the lexer,
+         * the counts not added to the metrics yet are dropped
+         * @param position first position the lexer scans
+         */
+        void reset(int position) {
+            Arrays.fill(this.tokens, 0);
+            this.reached = position;
+            this.scanned = 0;
+            this.commentNanos = 0;
+            this.stringNanos = 0;
+            this.numberNanos = 0;
+            this.pendingComments = 0;
+            this.longestToken = 0;
+            this.event.begin();
+        }
+
+
+        /** Count a comment skipped while scanning the next token
+         * @param nanos
+         */
+        void comment(long nanos) {
+            this.commentNanos += nanos;
+            this.pendingComments += nanos;
+        }
+
+
+        /** Count a scanned token
+         * @param tokenClass
+         * @param start position of the first char of the token
+         * @param reached position after the last char scanned
+         * @param nanos time to scan the token, comments included
+         */
+        void token(TokenClass tokenClass, int start, int reached, long nanos) {
+            nanos -= this.pendingComments;
+            this.pendingComments = 0;
+
+            this.tokens[tokenClass.ordinal()]++;
+            this.scanned += reached - this.reached;
+            this.reached = reached;
+
+            if (tokenClass == TokenClass.STRING) {
+                this.stringNanos += nanos;
+            } else if (tokenClass == TokenClass.INTEGER || tokenClass == TokenClass.DOUBLE) {
+                this.numberNanos += nanos;
+            }
+
+            if (tokenClass != TokenClass.END_OF_INPUT) {
+                this.longestToken = Math.max(this.longestToken, reached - start);
+            } else {
+                this.finish();
+            }
+        }
+
+
+        private void finish() {
+            LexerMetrics metrics = LexerMetrics.this;
+            long count = 0;
+
+            metrics.runs.increment();
+            metrics.scanned.add(this.scanned);
+            for (int i = 0; i < this.tokens.length; i++) {
+                if (this.tokens[i] > 0) {
+                    metrics.tokens[i].add(this.tokens[i]);
+                    count += this.tokens[i];
+                }
+            }
+            metrics.commentNanos.add(this.commentNanos);
+            metrics.stringNanos.add(this.stringNanos);
+            metrics.numberNanos.add(this.numberNanos);
+            metrics.longestToken.accumulate(this.longestToken);
+
+            this.event.end();
+            if (this.event.shouldCommit()) {
+                this.event.scanned = this.scanned;
+                this.event.tokens = count;
+                this.event.commentTime = this.commentNanos;
+                this.event.stringTime = this.stringNanos;
+                this.event.numberTime = this.numberNanos;
+                this.event.longestToken = this.longestToken;
+                this.event.commit();
+            }
+        }
+    }
+
+
+    /** Flight recorder event of one lexer run from its first token to the end of input
+     */
+    @Name("com.lexer.Lex")
+    @Label("Lexing")
+    @Category("Lexer")
+    @Description("Work done by one lexer from its first token to the end of input")
+    static final class LexEvent extends Event {
+        @Label("Scanned")
+        @Description("Chars scanned, bytes for mapped files")
+        @DataAmount
+        long scanned;
+
+        @Label("Tokens")
+        long tokens;
+
+        @Label("Comment Time")
+        @Timespan
+        long commentTime;
+
+        @Label("String Time")
+        @Timespan
+        long stringTime;
+
+        @Label("Number Time")
+        @Timespan
+        long numberTime;
+
+        @Label("Longest Token")
+        @Description("Chars of the longest token, string quotes included")
+        int longestToken;
+    }
+
+
+    /** Counts of LexerMetrics at one moment
+     */
+    public static final class Snapshot {
+        private final long runs;
+        private final long scanned;
+        private final Map<TokenClass, Long> tokens;
+        private final long commentNanos;
+        private final long stringNanos;
+        private final long numberNanos;
+        private final long longestToken;
+
+
+        private Snapshot(long runs, long scanned, Map<TokenClass, Long> tokens, long commentNanos,
+            long stringNanos, long numberNanos, long longestToken) {
+            this.runs = runs;
+            this.scanned = scanned;
+            this.tokens = tokens;
+            this.commentNanos = commentNanos;
+            this.stringNanos = stringNanos;
+            this.numberNanos = numberNanos;
+            this.longestToken = longestToken;
+        }
+
+
+        /** Get the number of lexers that reached the end of input
+         * @return long
+         */
+        public long getRuns() {
+            return this.runs;
+        }
+
+
+        /** Get the number of chars scanned, bytes for mapped files
+         * @return long
+         */
+        public long getScanned() {
+            return this.scanned;
+        }
+
+
+        /** Get the number of tokens of a class, END_OF_INPUT included
+         * @param tokenClass
+         * @return long
+         */
+        public long getTokens(TokenClass tokenClass) {
+            return this.tokens.getOrDefault(tokenClass, 0L);
+        }
+
+
+        /** Get the number of tokens of all classes
+         * @return long
+         */
+        public long getTokens() {
+            long count = 0;
+            for (long tokens : this.tokens.values()) {
+                count += tokens;
+            }
+
+            return count;
+        }
+
+
+        /** Get the time spent skipping comments
+         * @return long nanoseconds
+         */
+        public long getCommentNanos() {
+            return this.commentNanos;
+        }
+
+
+        /** Get the time spent scanning string literals, with
+         * the blanks before them
+         * @return long nanoseconds
+         */
+        public long getStringNanos() {
+            return this.stringNanos;
+        }
+
+
+        /** Get the time spent scanning number literals, with
+         * the blanks before them
+         * @return long nanoseconds
+         */
+        public long getNumberNanos() {
+            return this.numberNanos;
+        }
+
+
+        /** Get the chars of the longest token, string quotes included
+         * @return long
+         */
+        public long getLongestToken() {
+            return this.longestToken;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.lexer;
+
+import java.util.Arrays;
+
+/** Start positions of the lines of a source, line and column numbers
+ * are found by binary search when a token is asked for them.
+ * "\r\n", "\n" and a lone "\r" each end one line. the index of a
+ * streamed source is a window, only the lines from the released position
+ * on are kept and the lines before are counted
+ */
+class LineIndex {
+    private volatile Source source;     // scanned on first use, null once indexed
+    private int[] lineStarts = new int[64];
+    private int count = 1;      // lineStarts[0] is 0
+    private int dropped = 0;    // lines forgotten before lineStarts[0]
+    private boolean window = false;
+    private boolean afterReturn = false;
+
+
+    /** LineIndex construct for a source read in blocks,
+     * the blocks are given to this.scan() as they are read
+     */
+    LineIndex() {
+    }
+
+
+    /** Index of a source read in blocks that forgets the lines
+     * before the released position
+     * @return LineIndex
+     */
+    static LineIndex window() {
+        LineIndex lines = new LineIndex();
+        lines.window = true;
+
+        return lines;
+    }
+
+
+    /** Index of a source held in memory, built on first use
+     * @param source
+     * @return LineIndex
+     */
+    static LineIndex of(Source source) {
+        LineIndex lines = new LineIndex();
+        lines.source = source;
+
+        return lines;
+    }
+
+
+    /** Index of known line starts
+     * @param lineStarts start positions in order, the first is 0
+     * @return LineIndex
+     */
+    static LineIndex of(int[] lineStarts) {
+        LineIndex lines = new LineIndex();
+        lines.lineStarts = lineStarts.length == 0 ? new int[1] : lineStarts;
+        lines.count = Math.max(lineStarts.length, 1);
+
+        return lines;
+    }
+
+
+    /** Index the line breaks of a block of chars
+     * @param chars
+     * @param from first index in chars
+     * @param to index after the last char
+     * @param position source position of chars[from]
+     */
+    void scan(char[] chars, int from, int to, int position) {
+        for (int i = from; i < to; i++) {
+            this.lineBreak(chars[i], position + i - from);
+        }
+    }
+
+
+    private void lineBreak(char chr, int position) {
+        if (chr == '\n' && this.afterReturn) {
+            // second half of "\r\n"
+            this.lineStarts[this.count - 1] = position + 1;
+        } else if (chr == '\n' || chr == 13) {
+            if (this.count == this.lineStarts.length) {
+                this.lineStarts = Arrays.copyOf(this.lineStarts, this.count * 2);
+            }
+
+            this.lineStarts[this.count++] = position + 1;
+        }
+
+        this.afterReturn = chr == 13;
+    }
+
+
+    /** Forget the lines that end before a position, the line of the
+     * position is kept. positions before it can not be looked up any more
+     * @param position
+     */
+    void release(int position) {
+        if (!this.window) {
+            return;
+        }
+
+        int low = 0;
+        int high = this.count - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+
+            if (this.lineStarts[middle] <= position) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        // moved once half of the lines are released, so each line is moved about once
+        if (low > 0 && low * 2 >= this.count) {
+            System.arraycopy(this.lineStarts, low, this.lineStarts, 0, this.count - low);
+            this.count -= low;
+            this.dropped += low;
+        }
+    }
+
+
+    /** Keep every line from now on, for token streams
+     * that look up lines after the source moved on
+     */
+    void keepAll() {
+        this.window = false;
+    }
+
+
+    /** Check whether lines are forgotten, tokens then take their
+     * line and column numbers when they are lexed
+     * @return boolean
+     */
+    boolean isWindow() {
+        return this.window;
+    }
+
+
+    /** Index the whole source now when it is not indexed yet
+     */
+    synchronized void index() {
+        if (this.source == null) {
+            return;
+        }
+
+        for (int position = 0; !this.source.isEnd(position); position++) {
+            this.lineBreak(this.source.charAt(position), position);
+        }
+
+        this.source = null;
+    }
+
+
+    /** Get the start positions of the lines indexed so far
+     * @return int[]
+     * @throws IllegalStateException when lines were forgotten
+     */
+    int[] lineStarts() {
+        if (this.source != null) {
+            this.index();
+        } else if (this.dropped > 0) {
+            throw new IllegalStateException(this.dropped + " lines are already released");
+        }
+
+        return Arrays.copyOf(this.lineStarts, this.count);
+    }
+
+
+    /** Get the line number of a position, counted from 1
+     * @param position
+     * @return int
+     */
+    int lineNum(int position) {
+        if (this.source != null) {
+            this.index();
+        }
+
+        if (this.dropped > 0 && position < this.lineStarts[0]) {
+            throw new IllegalStateException("line of position " + position + " is already released");
+        }
+
+        int low = 0;
+        int high = this.count - 1;
+
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+
+            if (this.lineStarts[middle] <= position) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        return this.dropped + low + 1;
+    }
+
+
+    /** Get the start position of a line
+     * @param lineNum counted from 1, at most lineNum() of the last position
+     * @return int
+     */
+    int lineStart(int lineNum) {
+        if (this.source != null) {
+            this.index();
+        }
+
+        return this.lineStarts[lineNum - 1 - this.dropped];
+    }
+
+
+    /** Get the column number of a position, counted from 1
+     * @param position
+     * @return int
+     */
+    int columnNum(int position) {
+        return position - this.lineStarts[this.lineNum(position) - 1 - this.dropped] + 1;
+    }
+}
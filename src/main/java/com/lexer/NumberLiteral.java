@@ -0,0 +1,130 @@
+package com.lexer;
+
+/** Values of INTEGER and DOUBLE tokens kept in one long, the value of an
+ * INTEGER or the bits of a DOUBLE. literals have no sign so a negative
+ * INTEGER value marks a literal too large for a long
+ */
+final class NumberLiteral {
+    static final long OUT_OF_RANGE = -1;
+
+    // largest mantissa and power of ten a double holds exactly
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+
+    private NumberLiteral() {
+    }
+
+
+    /** Add a digit to the digits before it
+     * @param digits value of the digits before, OUT_OF_RANGE once too large
+     * @param chr
+     * @return long
+     */
+    static long addDigit(long digits, char chr) {
+        int digit = chr - '0';
+
+        if (digits < 0 || digits > (Long.MAX_VALUE - digit) / 10) {
+            return OUT_OF_RANGE;
+        }
+
+        return digits * 10 + digit;
+    }
+
+
+    /** Check whether a DOUBLE value can be found from its digits
+     * with one division, both numbers are exact so the result is
+     * correctly rounded
+     * @param digits
+     * @param fractionDigits
+     * @return boolean
+     */
+    static boolean isExact(long digits, int fractionDigits) {
+        return digits >= 0 && digits <= MAX_EXACT_MANTISSA && fractionDigits < POWERS_OF_TEN.length;
+    }
+
+
+    /** Get the value of a literal from its digits
+     * @param tokenClass
+     * @param digits all digits of the literal without the decimal point
+     * @param fractionDigits number of digits after the decimal point,
+     * isExact() must hold for a DOUBLE
+     * @return long 0 for the other token classes
+     */
+    static long value(TokenClass tokenClass, long digits, int fractionDigits) {
+        if (tokenClass == TokenClass.INTEGER) {
+            return digits;
+        } else if (tokenClass == TokenClass.DOUBLE) {
+            return Double.doubleToRawLongBits(digits / POWERS_OF_TEN[fractionDigits]);
+        }
+
+        return 0;
+    }
+
+
+    /** Get the value of a literal from its text, as the lexer does
+     * @param tokenClass
+     * @param text
+     * @param start
+     * @param end
+     * @return long 0 for the other token classes
+     */
+    static long parse(TokenClass tokenClass, CharSequence text, int start, int end) {
+        long digits = 0;
+        int fractionDigits = 0;
+        boolean fraction = false;
+
+        for (int i = start; i < end; i++) {
+            char chr = text.charAt(i);
+
+            if (chr == '.') {
+                fraction = true;
+            } else {
+                digits = NumberLiteral.addDigit(digits, chr);
+                fractionDigits += fraction ? 1 : 0;
+            }
+        }
+
+        if (tokenClass == TokenClass.DOUBLE && !NumberLiteral.isExact(digits, fractionDigits)) {
+            return Double.doubleToRawLongBits(Double.parseDouble(text.subSequence(start, end).toString()));
+        }
+
+        return NumberLiteral.value(tokenClass, digits, fractionDigits);
+    }
+
+
+    /** Get an INTEGER value
+     * @param value
+     * @return long
+     * @throws ArithmeticException when the literal does not fit in a long
+     */
+    static long toLong(long value) {
+        if (value < 0) {
+            throw new ArithmeticException("integer literal out of range of long");
+        }
+
+        return value;
+    }
+
+
+    /** Get an INTEGER or DOUBLE value as a double
+     * @param tokenClass
+     * @param value
+     * @param text
+     * @param start
+     * @param end
+     * @return double
+     */
+    static double toDouble(TokenClass tokenClass, long value, CharSequence text, int start, int end) {
+        if (tokenClass == TokenClass.DOUBLE) {
+            return Double.longBitsToDouble(value);
+        } else if (value < 0) {
+            return Double.parseDouble(text.subSequence(start, end).toString());
+        }
+
+        return value;
+    }
+}
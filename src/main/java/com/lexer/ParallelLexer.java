@@ -0,0 +1,215 @@
+package com.lexer;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Lexes one large source code string on many cores.
+ * the source is split into chunks at new lines and every chunk is lexed
+ * concurrently assuming it does not start inside a string literal or comment.
+ * chunks are then stitched in order, when the previous chunk ends at a point
+ * the next chunk never reached the tokens in between are lexed again
+ * until both agree, so the result is the same as Lexer.tokenizeCompact().
+ * positions are absolute so line numbers need no fixing
+ */
+public final class ParallelLexer {
+    static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+
+    private ParallelLexer() {
+    }
+
+
+    /** Lex the source code on the common fork/join pool
+     * @param sourceCode
+     * @return TokenStream
+     */
+    public static TokenStream tokenize(String sourceCode) {
+        return ParallelLexer.tokenize(sourceCode, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+
+    /** Lex the source code on the given fork/join pool
+     * @param sourceCode
+     * @param pool
+     * @param chunkSize smallest number of chars in a chunk
+     * @return TokenStream
+     */
+    public static TokenStream tokenize(String sourceCode, ForkJoinPool pool, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunk size must be positive: " + chunkSize);
+        }
+
+        if (sourceCode.length() <= chunkSize) {
+            return new Lexer(sourceCode).tokenizeCompact();
+        }
+
+        Chunk[] chunks = ParallelLexer.split(sourceCode, chunkSize);
+        pool.invoke(new ChunkTask(chunks, 0, chunks.length));
+
+        return ParallelLexer.stitch(sourceCode, chunks);
+    }
+
+
+    /** Split the source code after new line chars
+     * @param sourceCode
+     * @param chunkSize
+     * @return Chunk[]
+     */
+    private static Chunk[] split(String sourceCode, int chunkSize) {
+        Chunk[] chunks = new Chunk[sourceCode.length() / chunkSize + 1];
+        int count = 0;
+        int start = 0;
+
+        while (start < sourceCode.length()) {
+            int end = sourceCode.indexOf('\n', Math.min(start + chunkSize, sourceCode.length()) - 1);
+            end = end < 0 ? sourceCode.length() : end + 1;
+
+            chunks[count++] = new Chunk(sourceCode, start, end);
+            start = end;
+        }
+
+        return Arrays.copyOf(chunks, count);
+    }
+
+
+    /** Join the chunk tokens in order, re-lexing where a chunk
+     * started in the middle of a token
+     * @param sourceCode
+     * @param chunks
+     * @return TokenStream
+     */
+    private static TokenStream stitch(String sourceCode, Chunk[] chunks) {
+        TokenStream tokens = new TokenStream(sourceCode);
+
+        // the first chunk starts at the real start
+        Chunk chunk = chunks[0];
+        tokens.addAll(chunk.tokens, 0);
+        if (chunk.failure != null) {
+            throw chunk.failure;
+        } else if (chunk.ended) {
+            return tokens;
+        }
+
+        Lexer lexer = chunk.lexer;
+        int position = chunk.exitPosition;
+
+        int next = 1;
+        while (next < chunks.length) {
+            chunk = chunks[next];
+            int index = Arrays.binarySearch(chunk.positions, 0, chunk.tokens.size(), position);
+
+            if (index >= 0) {
+                // back in step with the chunk, take the rest of it
+                tokens.addAll(chunk.tokens, index);
+                if (chunk.failure != null) {
+                    throw chunk.failure;
+                } else if (chunk.ended) {
+                    return tokens;
+                }
+
+                lexer = chunk.lexer;
+                position = chunk.exitPosition;
+            } else if (position < chunk.endPosition) {
+                if (lexer.advanceTo(tokens) == TokenClass.END_OF_INPUT) {
+                    return tokens;
+                }
+
+                position = lexer.getPosition();
+                continue;
+            }
+
+            next++;
+        }
+
+        // only reached when the last chunk was passed over by a token
+        while (lexer.advanceTo(tokens) != TokenClass.END_OF_INPUT) {
+            // to the end of input
+        }
+
+        return tokens;
+    }
+
+
+    /** Tokens of one chunk lexed from its first char
+     */
+    private static final class Chunk {
+        private final String sourceCode;
+        private final int start;
+        private final int end;
+        private final int endPosition;  // position of the last char before the next chunk
+        private final TokenStream tokens;
+        private int[] positions = new int[64];   // previous token position of every token
+        private Lexer lexer;
+        private int exitPosition;
+        private boolean ended = false;
+        private RuntimeException failure;
+
+
+        Chunk(String sourceCode, int start, int end) {
+            this.sourceCode = sourceCode;
+            this.start = start;
+            this.end = end;
+            this.endPosition = end - 1;
+            this.tokens = new TokenStream(sourceCode);
+        }
+
+
+        void lex() {
+            this.lexer = new Lexer(this.sourceCode, this.start, false);
+            int position = this.lexer.getPosition();
+
+            while (position < this.endPosition || this.end == this.sourceCode.length()) {
+                if (this.tokens.size() == this.positions.length) {
+                    this.positions = Arrays.copyOf(this.positions, this.positions.length * 2);
+                }
+
+                try {
+                    this.positions[this.tokens.size()] = position;
+
+                    if (this.lexer.advanceTo(this.tokens) == TokenClass.END_OF_INPUT) {
+                        this.ended = true;
+                        return;
+                    }
+                } catch (RuntimeException e) {
+                    // may be caused by a wrong guess of the chunk start,
+                    // only raised when stitching reaches it
+                    this.failure = e;
+                    return;
+                }
+
+                position = this.lexer.getPosition();
+            }
+
+            this.exitPosition = position;
+        }
+    }
+
+
+    private static final class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Chunk[] chunks;
+        private final int from;
+        private final int to;
+
+
+        ChunkTask(Chunk[] chunks, int from, int to) {
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from == 1) {
+                this.chunks[this.from].lex();
+                return;
+            }
+
+            int middle = (this.from + this.to) >>> 1;
+            ChunkTask.invokeAll(new ChunkTask(this.chunks, this.from, middle), new ChunkTask(this.chunks, middle, this.to));
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.lexer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/** Source that pulls the source code from a Reader through a fixed size buffer.
+ * chars before the released position are dropped when the buffer is refilled,
+ * the buffer only grows when a single token is longer than the buffer
+ */
+class ReaderSource extends Source {
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+    private final LineIndex lines = LineIndex.window();
+    private char[] buffer;
+    private int offset = 0;     // absolute position of buffer[0]
+    private int count = 0;      // number of valid chars in the buffer
+    private int released = 0;
+    private int held = Integer.MAX_VALUE;  // released chars from here on are kept
+    private boolean eof = false;
+
+
+    ReaderSource(Reader reader, int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("buffer size must be positive: " + bufferSize);
+        }
+
+        this.reader = reader;
+        this.buffer = new char[bufferSize];
+    }
+
+
+    @Override
+    char charAt(int position) {
+        if (position < this.offset) {
+            throw new IllegalStateException("position " + position + " is already released");
+        }
+
+        while (position >= this.offset + this.count) {
+            if (!this.fill()) {
+                return END;
+            }
+        }
+
+        return this.buffer[position - this.offset];
+    }
+
+
+    @Override
+    boolean isEnd(int position) {
+        while (position >= this.offset + this.count) {
+            if (!this.fill()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    @Override
+    String substring(int start, int end) {
+        if (start < this.offset) {
+            throw new IllegalStateException("position " + start + " is already released");
+        }
+
+        if (end > start) {
+            this.charAt(end - 1);
+        }
+
+        return new String(this.buffer, start - this.offset, end - start);
+    }
+
+
+    @Override
+    void appendTo(StringBuilder builder, int start, int end) {
+        if (start < this.offset) {
+            throw new IllegalStateException("position " + start + " is already released");
+        }
+
+        if (end > start) {
+            this.charAt(end - 1);
+        }
+
+        builder.append(this.buffer, start - this.offset, end - start);
+    }
+
+
+    /** Get the line start index, it covers the chars read so far
+     * and forgets the lines of dropped chars unless keepLines() is called
+     * @return LineIndex
+     */
+    @Override
+    LineIndex lines() {
+        return this.lines;
+    }
+
+
+    @Override
+    void keepLines() {
+        this.lines.keepAll();
+    }
+
+
+    @Override
+    void release(int position) {
+        position = Math.min(position, this.held);
+
+        if (position > this.released) {
+            this.released = position;
+        }
+    }
+
+
+    @Override
+    void hold(int position) {
+        this.held = position;
+    }
+
+
+    /** Read the next block of chars from the reader, released chars
+     * are dropped first to make room
+     * @return boolean false at end of input
+     */
+    private boolean fill() {
+        if (this.eof) {
+            return false;
+        }
+
+        int drop = Math.min(this.released - this.offset, this.count);
+        if (drop > 0) {
+            System.arraycopy(this.buffer, drop, this.buffer, 0, this.count - drop);
+            this.offset += drop;
+            this.count -= drop;
+            this.lines.release(this.offset);
+        }
+
+        // a token longer than the whole buffer is still in progress
+        if (this.count == this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, this.buffer.length * 2);
+        }
+
+        int read;
+        try {
+            read = this.reader.read(this.buffer, this.count, this.buffer.length - this.count);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (read < 0) {
+            this.eof = true;
+            return false;
+        }
+
+        this.lines.scan(this.buffer, this.count, this.count + read, this.offset + this.count);
+        this.count += read;
+        return true;
+    }
+}
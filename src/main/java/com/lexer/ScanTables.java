@@ -0,0 +1,212 @@
+package com.lexer;
+
+/** Precomputed tables used by the table driven scanner engine
+ */
+final class ScanTables {
+    // char classes
+    static final byte OTHER = 0;
+    static final byte BLANK = 1;
+    static final byte NEWLINE = 2;
+    static final byte ALPHA = 3;
+    static final byte DIGIT = 4;
+    static final byte QUOTE = 5;
+    static final byte MINUS = 6;
+    static final byte SLASH = 7;
+    static final byte OPERATOR = 8;
+    static final byte PUNCTUATION = 9;
+
+    private static final byte[] CHAR_CLASSES = new byte[256];
+
+    // token classes of single char operators and punctuation
+    private static final TokenClass[] SINGLE_CHAR_TOKENS = new TokenClass[128];
+
+    // token classes of two char operators indexed by first and second char
+    private static final TokenClass[][] COMPOUND_OPERATORS = new TokenClass[128][];
+
+    // keywords indexed by keywordHash()
+    private static final char[][] KEYWORDS = new char[32][];
+    private static final TokenClass[] KEYWORD_CLASSES = new TokenClass[32];
+
+    static {
+        CHAR_CLASSES[9] = BLANK;    // horizontal tab
+        CHAR_CLASSES[11] = BLANK;   // vertical tab
+        CHAR_CLASSES[12] = BLANK;   // form feed
+        CHAR_CLASSES[32] = BLANK;   // space
+        CHAR_CLASSES[160] = BLANK;  // non-breaking space
+        CHAR_CLASSES['\n'] = NEWLINE;
+        CHAR_CLASSES[13] = NEWLINE;
+
+        for (char chr = 'a'; chr <= 'z'; chr++) {
+            CHAR_CLASSES[chr] = ALPHA;
+            CHAR_CLASSES[Character.toUpperCase(chr)] = ALPHA;
+        }
+        CHAR_CLASSES['_'] = ALPHA;
+
+        for (char chr = '0'; chr <= '9'; chr++) {
+            CHAR_CLASSES[chr] = DIGIT;
+        }
+
+        CHAR_CLASSES['"'] = QUOTE;
+
+        ScanTables.punctuation('(', TokenClass.LEFTPAREN);
+        ScanTables.punctuation(')', TokenClass.RIGHTPAREN);
+        ScanTables.punctuation('[', TokenClass.LEFTSQEBRACKET);
+        ScanTables.punctuation(']', TokenClass.RIGHTSQEBRACKET);
+        ScanTables.punctuation('{', TokenClass.LEFTBRACE);
+        ScanTables.punctuation('}', TokenClass.RIGHTBRACE);
+        ScanTables.punctuation(':', TokenClass.COLON);
+        ScanTables.punctuation(',', TokenClass.COMMA);
+        ScanTables.punctuation(';', TokenClass.SEMICOLON);
+
+        ScanTables.operator('+', TokenClass.OP_ADD);
+        ScanTables.operator('-', TokenClass.OP_SUBTRACT);
+        ScanTables.operator('*', TokenClass.OP_MULTIPLY);
+        ScanTables.operator('/', TokenClass.OP_DIVIDE);
+        ScanTables.operator('%', TokenClass.OP_MOD);
+        ScanTables.operator('<', TokenClass.OP_LESS);
+        ScanTables.operator('>', TokenClass.OP_GREATER);
+        ScanTables.operator('=', TokenClass.OP_ASSIGN);
+        ScanTables.operator('!', TokenClass.OP_NOT);
+        ScanTables.operator('&', TokenClass.OP_BITWISEAND);
+        ScanTables.operator('|', TokenClass.OP_BITWISEOR);
+        ScanTables.operator('^', TokenClass.OP_BITWISEXOR);
+
+        // '-' may start a negative number and '/' a comment
+        CHAR_CLASSES['-'] = MINUS;
+        CHAR_CLASSES['/'] = SLASH;
+
+        ScanTables.compound('+', '+', TokenClass.OP_INCREMENTONE);
+        ScanTables.compound('+', '=', TokenClass.OP_COMPUNDADD);
+        ScanTables.compound('-', '-', TokenClass.OP_DECREMENTONE);
+        ScanTables.compound('-', '=', TokenClass.OP_COMPUNDSUBTRACT);
+        ScanTables.compound('*', '=', TokenClass.OP_COMPUNDMULTIPLY);
+        ScanTables.compound('/', '=', TokenClass.OP_COMPUNDDIVIDE);
+        ScanTables.compound('%', '=', TokenClass.OP_COMPUNDMOD);
+        ScanTables.compound('<', '=', TokenClass.OP_LESSEQUAL);
+        ScanTables.compound('>', '=', TokenClass.OP_GREATEREQUAL);
+        ScanTables.compound('=', '=', TokenClass.OP_EQUAL);
+        ScanTables.compound('!', '=', TokenClass.OP_NOTEQUAL);
+        ScanTables.compound('&', '&', TokenClass.OP_AND);
+        ScanTables.compound('|', '|', TokenClass.OP_OR);
+
+        ScanTables.keyword("if", TokenClass.KEYWORD_IF);
+        ScanTables.keyword("else", TokenClass.KEYWORD_ELSE);
+        ScanTables.keyword("while", TokenClass.KEYWORD_WHILE);
+        ScanTables.keyword("int", TokenClass.KEYWORD_INT);
+        ScanTables.keyword("str", TokenClass.KEYWORD_STR);
+        ScanTables.keyword("bool", TokenClass.KEYWORD_BOOL);
+        ScanTables.keyword("double", TokenClass.KEYWORD_DOUBLE);
+        ScanTables.keyword("true", TokenClass.KEYWORD_TRUE);
+        ScanTables.keyword("false", TokenClass.KEYWORD_FALSE);
+        ScanTables.keyword("function", TokenClass.KEYWORD_FUNCTION);
+        ScanTables.keyword("return", TokenClass.KEYWORD_RETURN);
+        ScanTables.keyword("include", TokenClass.KEYWORD_INCLUDE);
+    }
+
+
+    private ScanTables() {
+    }
+
+
+    private static void punctuation(char chr, TokenClass tokenClass) {
+        CHAR_CLASSES[chr] = PUNCTUATION;
+        SINGLE_CHAR_TOKENS[chr] = tokenClass;
+    }
+
+
+    private static void operator(char chr, TokenClass tokenClass) {
+        CHAR_CLASSES[chr] = OPERATOR;
+        SINGLE_CHAR_TOKENS[chr] = tokenClass;
+    }
+
+
+    private static void compound(char first, char second, TokenClass tokenClass) {
+        if (COMPOUND_OPERATORS[first] == null) {
+            COMPOUND_OPERATORS[first] = new TokenClass[128];
+        }
+
+        COMPOUND_OPERATORS[first][second] = tokenClass;
+    }
+
+
+    private static void keyword(String keyword, TokenClass tokenClass) {
+        int hash = ScanTables.keywordHash(keyword.charAt(0), keyword.charAt(keyword.length() - 1), keyword.length());
+
+        if (KEYWORDS[hash] != null) {
+            throw new AssertionError("keyword hash collision: " + keyword);
+        }
+
+        KEYWORDS[hash] = keyword.toCharArray();
+        KEYWORD_CLASSES[hash] = tokenClass;
+    }
+
+
+    /** Perfect hash of the keywords from their first char,
+     * last char and length
+     * @param first
+     * @param last
+     * @param length
+     * @return int
+     */
+    static int keywordHash(char first, char last, int length) {
+        return (first + last + length) & 31;
+    }
+
+
+    /** Get the char class of a char
+     * @param chr
+     * @return byte
+     */
+    static byte charClass(char chr) {
+        return chr < 256 ? CHAR_CLASSES[chr] : OTHER;
+    }
+
+
+    static TokenClass singleCharToken(char chr) {
+        return SINGLE_CHAR_TOKENS[chr];
+    }
+
+
+    /** Get the two char operator starting with the given chars
+     * @param first
+     * @param second
+     * @return TokenClass or null when the chars are two operators
+     */
+    static TokenClass compoundOperator(char first, char second) {
+        TokenClass[] row = COMPOUND_OPERATORS[first];
+        if (row == null || second >= 128) {
+            return null;
+        }
+
+        return row[second];
+    }
+
+
+    /** Look up the word between start (inclusive) and end (exclusive)
+     * of the source without copying it
+     * @param source
+     * @param start
+     * @param end
+     * @return TokenClass keyword class or IDENTIFIER
+     */
+    static TokenClass keyword(Source source, int start, int end) {
+        int length = end - start;
+        if (length < 2 || length > 8) {
+            return TokenClass.IDENTIFIER;
+        }
+
+        int hash = ScanTables.keywordHash(source.charAt(start), source.charAt(end - 1), length);
+        char[] keyword = KEYWORDS[hash];
+        if (keyword == null || keyword.length != length) {
+            return TokenClass.IDENTIFIER;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (source.charAt(start + i) != keyword[i]) {
+                return TokenClass.IDENTIFIER;
+            }
+        }
+
+        return KEYWORD_CLASSES[hash];
+    }
+}
@@ -0,0 +1,153 @@
+package com.lexer;
+
+/** Random access view of the source code used by the Lexer.
+ * positions are absolute offsets from the beginning of the input
+ */
+abstract class Source {
+    // returned for every position past the end of input, isEnd() tells
+    // it apart from a NUL char of the source
+    static final char END = '\0';
+
+    private LineIndex lines;
+
+
+    /** Get the char at the given position
+     * @param position
+     * @return char or END when the position is past the end of input
+     */
+    abstract char charAt(int position);
+
+
+    /** Check whether the given position is past the end of input
+     * @param position
+     * @return boolean
+     */
+    abstract boolean isEnd(int position);
+
+
+    /** Copy the chars between start (inclusive) and end (exclusive)
+     * @param start
+     * @param end
+     * @return String
+     */
+    abstract String substring(int start, int end);
+
+
+    /** Find the first char at or after the given position that is not
+     * a blank or a line break, chars passed over are released. buffers
+     * of bytes are searched eight bytes at a time, strings char by char
+     * @param position
+     * @return int position of the char or the end of input
+     */
+    int skipBlanks(int position) {
+        while (!this.isEnd(position)) {
+            byte charClass = ScanTables.charClass(this.charAt(position));
+            if (charClass != ScanTables.BLANK && charClass != ScanTables.NEWLINE) {
+                break;
+            }
+
+            this.release(position);
+            position++;
+        }
+
+        return position;
+    }
+
+
+    /** Find the end of a comment, the first line break or NUL char at
+     * or after the given position, chars passed over are released
+     * @param position
+     * @return int position of the char or the end of input
+     */
+    int indexOfCommentEnd(int position) {
+        while (!this.isEnd(position)) {
+            char chr = this.charAt(position);
+            if (chr == '\n' || chr == 13 || chr == END) {
+                break;
+            }
+
+            this.release(position);
+            position++;
+        }
+
+        return position;
+    }
+
+
+    /** Find the first double quote at or after the given position
+     * @param position
+     * @return int position of the quote or the end of input
+     */
+    int indexOfQuote(int position) {
+        while (!this.isEnd(position) && this.charAt(position) != '"') {
+            position++;
+        }
+
+        return position;
+    }
+
+
+    /** Append the chars between start (inclusive) and end (exclusive)
+     * @param builder
+     * @param start
+     * @param end
+     */
+    void appendTo(StringBuilder builder, int start, int end) {
+        builder.append(this.substring(start, end));
+    }
+
+
+    /** Get the whole source code when it is held in memory as chars,
+     * positions of this source are indexes of the returned text
+     * @return CharSequence or null for buffered sources
+     */
+    CharSequence text() {
+        return null;
+    }
+
+
+    /** Get the line start index of the source
+     * @return LineIndex
+     */
+    LineIndex lines() {
+        if (this.lines == null) {
+            this.lines = LineIndex.of(this);
+        }
+
+        return this.lines;
+    }
+
+
+    /** Keep the lines of the chars read from now on in the line index
+     * after the chars are released, for tokens kept until the end
+     */
+    void keepLines() {
+    }
+
+
+    /** Forget the line index before the source changes, an index
+     * given out before is completed so it stays valid
+     */
+    void dropLines() {
+        if (this.lines != null) {
+            this.lines.index();
+            this.lines = null;
+        }
+    }
+
+
+    /** Tell the source that chars before the given position
+     * will not be requested again, buffered sources may drop them
+     * @param position
+     */
+    void release(int position) {
+    }
+
+
+    /** Keep the chars from the given position on even when they are
+     * released, for looking ahead past a point scanning may go back to
+     * @param position Integer.MAX_VALUE to keep nothing
+     */
+    void hold(int position) {
+    }
+}
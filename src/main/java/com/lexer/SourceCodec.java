@@ -0,0 +1,20 @@
+package com.lexer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/** Decompression of source code stored compressed, see Lexer.fromCompressed()
+ */
+@FunctionalInterface
+public interface SourceCodec {
+    SourceCodec GZIP = compressed -> new GZIPInputStream(compressed, 1 << 16);
+
+
+    /** Wrap the compressed bytes in a stream of the decompressed bytes
+     * @param compressed
+     * @return InputStream closing it closes the compressed stream
+     * @throws IOException
+     */
+    InputStream decode(InputStream compressed) throws IOException;
+}
@@ -0,0 +1,117 @@
+package com.lexer;
+
+/** Source backed by source code held in memory, a String
+ * or any other char sequence whose chars do not change
+ */
+class StringSource extends Source {
+    private CharSequence sourceCode;
+    private String string;      // the source code when it is a String
+
+
+    StringSource(CharSequence sourceCode) {
+        this.reset(sourceCode);
+    }
+
+
+    /** Start over with other source code, tokens of the
+     * previous source code keep their line index
+     * @param sourceCode
+     */
+    void reset(CharSequence sourceCode) {
+        if (this.sourceCode != null) {
+            this.dropLines();
+        }
+
+        this.sourceCode = sourceCode;
+        this.string = sourceCode instanceof String ? (String) sourceCode : null;
+    }
+
+
+    @Override
+    char charAt(int position) {
+        if (position >= this.sourceCode.length()) {
+            return END;
+        }
+
+        return this.sourceCode.charAt(position);
+    }
+
+
+    @Override
+    boolean isEnd(int position) {
+        return position >= this.sourceCode.length();
+    }
+
+
+    @Override
+    int skipBlanks(int position) {
+        if (this.string == null) {
+            return super.skipBlanks(position);
+        }
+
+        // there is no search for a char out of a set on strings, so this
+        // stays one char at a time but reads the string itself, nothing
+        // is released from it
+        String string = this.string;
+        int length = string.length();
+
+        while (position < length) {
+            byte charClass = ScanTables.charClass(string.charAt(position));
+            if (charClass != ScanTables.BLANK && charClass != ScanTables.NEWLINE) {
+                break;
+            }
+
+            position++;
+        }
+
+        return position;
+    }
+
+
+    @Override
+    int indexOfCommentEnd(int position) {
+        if (this.string == null) {
+            return super.indexOfCommentEnd(position);
+        }
+
+        // '\r' and NUL are rare, they are only looked for before the newline
+        int newline = this.indexOf('\n', position);
+        for (int i = position; i < newline; i++) {
+            char chr = this.string.charAt(i);
+            if (chr == 13 || chr == END) {
+                return i;
+            }
+        }
+
+        return newline;
+    }
+
+
+    @Override
+    int indexOfQuote(int position) {
+        if (this.string == null) {
+            return super.indexOfQuote(position);
+        }
+
+        return this.indexOf('"', position);
+    }
+
+
+    // String.indexOf() is a vectorized intrinsic
+    private int indexOf(char chr, int position) {
+        int index = this.string.indexOf(chr, position);
+        return index < 0 ? this.string.length() : index;
+    }
+
+
+    @Override
+    String substring(int start, int end) {
+        return this.sourceCode.subSequence(start, end).toString();
+    }
+
+
+    @Override
+    CharSequence text() {
+        return this.sourceCode;
+    }
+}
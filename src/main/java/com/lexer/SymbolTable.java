@@ -0,0 +1,176 @@
+package com.lexer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/** Identifier names shared by any number of lexers on any threads.
+ * every distinct name is stored once and numbered from 0 in the order
+ * names are first seen, so later stages compare and hash identifiers
+ * as ints. names are spread over striped hash tables by their hash, a
+ * lexer only locks the stripe of the name it looks up and no string is
+ * created for names already in the table
+ */
+public final class SymbolTable {
+    private static final int STRIPE_SHIFT = 6;
+    private static final int STRIPES = 1 << STRIPE_SHIFT;
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int MAX_CHUNKS = 1 << 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicInteger size = new AtomicInteger();
+    // names by ID in chunks created when the first ID of a chunk is given out
+    private final AtomicReferenceArray<AtomicReferenceArray<String>> names =
+        new AtomicReferenceArray<AtomicReferenceArray<String>>(MAX_CHUNKS);
+
+
+    public SymbolTable() {
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new Stripe();
+        }
+    }
+
+
+    /** Get the ID of a name, adding the name when it is new
+     * @param name
+     * @return int
+     */
+    public int intern(CharSequence name) {
+        return this.intern(new StringSource(name), 0, name.length());
+    }
+
+
+    /** Get the ID of the name between start and end of a source
+     * @param source
+     * @param start
+     * @param end
+     * @return int
+     */
+    int intern(Source source, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+        hash ^= hash >>> 16;
+
+        Stripe stripe = this.stripes[hash & (STRIPES - 1)];
+
+        synchronized (stripe) {
+            int mask = stripe.ids.length - 1;
+            int slot = (hash >>> STRIPE_SHIFT) & mask;
+
+            while (stripe.ids[slot] != 0) {
+                if (stripe.hashes[slot] == hash && this.matches(stripe.ids[slot] - 1, source, start, end)) {
+                    return stripe.ids[slot] - 1;
+                }
+
+                slot = (slot + 1) & mask;
+            }
+
+            int id = this.add(source.substring(start, end));
+            stripe.hashes[slot] = hash;
+            stripe.ids[slot] = id + 1;
+
+            if (++stripe.count * 2 > stripe.ids.length) {
+                stripe.grow();
+            }
+
+            return id;
+        }
+    }
+
+
+    private boolean matches(int id, Source source, int start, int end) {
+        String name = this.name(id);
+        if (name.length() != end - start) {
+            return false;
+        }
+
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != source.charAt(start + i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+
+    /** Give the next ID to a name
+     * @param name
+     * @return int
+     */
+    private int add(String name) {
+        int id = this.size.getAndIncrement();
+        if (id >= MAX_CHUNKS * CHUNK_SIZE) {
+            this.size.decrementAndGet();
+            throw new IllegalStateException("symbol table is full");
+        }
+
+        AtomicReferenceArray<String> chunk = this.names.get(id >>> CHUNK_SHIFT);
+        if (chunk == null) {
+            this.names.compareAndSet(id >>> CHUNK_SHIFT, null, new AtomicReferenceArray<String>(CHUNK_SIZE));
+            chunk = this.names.get(id >>> CHUNK_SHIFT);
+        }
+
+        chunk.set(id & (CHUNK_SIZE - 1), name);
+        return id;
+    }
+
+
+    /** Get the name of an ID
+     * @param id
+     * @return String
+     * @throws IndexOutOfBoundsException when no name has the ID yet
+     */
+    public String name(int id) {
+        AtomicReferenceArray<String> chunk = id < 0 || id >= this.size.get() ? null : this.names.get(id >>> CHUNK_SHIFT);
+        String name = chunk == null ? null : chunk.get(id & (CHUNK_SIZE - 1));
+
+        if (name == null) {
+            throw new IndexOutOfBoundsException("symbol " + id + ", size " + this.size.get());
+        }
+
+        return name;
+    }
+
+
+    /** Get the number of names, IDs are below it
+     * @return int
+     */
+    public int size() {
+        return this.size.get();
+    }
+
+
+    /** Open addressing table of the IDs of one stripe, a slot
+     * holds the ID plus one so 0 marks a free slot
+     */
+    private static final class Stripe {
+        private int[] hashes = new int[16];
+        private int[] ids = new int[16];
+        private int count = 0;
+
+
+        private void grow() {
+            int[] hashes = this.hashes;
+            int[] ids = this.ids;
+
+            this.hashes = new int[hashes.length * 2];
+            this.ids = new int[ids.length * 2];
+            int mask = this.ids.length - 1;
+
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] != 0) {
+                    int slot = (hashes[i] >>> STRIPE_SHIFT) & mask;
+                    while (this.ids[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+
+                    this.hashes[slot] = hashes[i];
+                    this.ids[slot] = ids[i];
+                }
+            }
+        }
+    }
+}
@@ -2,9 +2,17 @@ package com.lexer;
 
 public class Token {    
     private TokenClass tokenClass;
+    private CharSequence text;
+    private int start;
+    private int length;
     private String value;
+    private LineIndex lines;
+    private int offset = -1;
     private int lineNum;
     private int columnNum;
+    private long number;
+    private boolean hasNumber = false;
+    private int symbol = -1;
     
     /** Token constructor
      * @param tokenClass
@@ -14,25 +22,164 @@ public class Token {
      * @return 
      */
     public Token(TokenClass tokenClass, String value, int lineNum, int columnNum) {
-        this.tokenClass = tokenClass;
+        this(tokenClass, value, 0, value.length(), lineNum, columnNum);
         this.value = value;
+    }
+    
+    /** Token constructor for a token read back with its position
+     * @param tokenClass
+     * @param value
+     * @param offset position of the first char of the token
+     * @param lineNum
+     * @param columnNum
+     * @return 
+     */
+    Token(TokenClass tokenClass, String value, int offset, int lineNum, int columnNum) {
+        this(tokenClass, value, lineNum, columnNum);
+        this.offset = offset;
+    }
+    
+    /** Token constructor for a value that is a range of a larger text,
+     * the text is not copied
+     * @param tokenClass
+     * @param text
+     * @param start
+     * @param length
+     * @param lineNum
+     * @param columnNum
+     * @return 
+     */
+    Token(TokenClass tokenClass, CharSequence text, int start, int length, int lineNum, int columnNum) {
+        this.tokenClass = tokenClass;
+        this.text = text;
+        this.start = start;
+        this.length = length;
         this.lineNum = lineNum;
         this.columnNum = columnNum;
     }
     
+    /** Token constructor for a token found in a source, line and column
+     * numbers are looked up from the offset when they are asked for
+     * @param tokenClass
+     * @param text
+     * @param start
+     * @param length
+     * @param lines
+     * @param offset position of the first char of the token
+     * @return 
+     */
+    Token(TokenClass tokenClass, CharSequence text, int start, int length, LineIndex lines, int offset) {
+        this(tokenClass, text, start, length, 0, 0);
+        this.lines = lines;
+        this.offset = offset;
+    }
+    
     public TokenClass getTokenClass() {
         return this.tokenClass;
     }
     
+    /** Keep the value of a number literal found by the lexer
+     * @param number see NumberLiteral
+     */
+    void setNumber(long number) {
+        this.number = number;
+        this.hasNumber = true;
+    }
+    
+    /** Keep the symbol ID of an identifier
+     * @param symbol
+     * @param name shared name of the symbol, null to keep the source text
+     */
+    void setSymbol(int symbol, String name) {
+        this.symbol = symbol;
+        if (name != null) {
+            this.value = name;
+        }
+    }
+    
+    /** Get the symbol ID of an IDENTIFIER token lexed with a symbol table
+     * @return int or -1 when the identifier was not interned
+     */
+    public int getSymbol() {
+        return this.symbol;
+    }
+    
+    private long getNumber() {
+        if (this.tokenClass != TokenClass.INTEGER && this.tokenClass != TokenClass.DOUBLE) {
+            throw new IllegalStateException(this.tokenClass + " token has no number value");
+        }
+
+        if (!this.hasNumber) {
+            this.setNumber(NumberLiteral.parse(this.tokenClass, this.text, this.start, this.start + this.length));
+        }
+
+        return this.number;
+    }
+    
+    /** Get the value of an INTEGER token without parsing its text
+     * @return long
+     * @throws ArithmeticException when the literal does not fit in a long
+     * @throws IllegalStateException for the other token classes
+     */
+    public long getLong() {
+        if (this.tokenClass != TokenClass.INTEGER) {
+            throw new IllegalStateException(this.tokenClass + " token has no long value");
+        }
+
+        return NumberLiteral.toLong(this.getNumber());
+    }
+    
+    /** Get the value of an INTEGER or DOUBLE token without parsing its text
+     * @return double
+     * @throws IllegalStateException for the other token classes
+     */
+    public double getDouble() {
+        return NumberLiteral.toDouble(this.tokenClass, this.getNumber(), this.text, this.start, this.start + this.length);
+    }
+    
+    /** Get the value as a string, created from the source
+     * text on the first call
+     * @return String
+     */
     public String getValue() {
+        if (this.value == null) {
+            this.value = this.text.subSequence(this.start, this.start + this.length).toString();
+        }
+
         return this.value;
     }
     
+    /** Get the value as a view of the source text without copying it
+     * @return CharSequence
+     */
+    public CharSequence getLexeme() {
+        if (this.value != null) {
+            return this.value;
+        }
+
+        return new Lexeme(this.text, this.start, this.length);
+    }
+    
+    /** Get the position of the first char of the token in the source
+     * @return int or -1 for tokens not made by a lexer
+     */
+    public int getOffset() {
+        return this.offset;
+    }
+    
     public int getLineNum() {
+        if (this.lines != null) {
+            return this.lines.lineNum(this.offset);
+        }
+
         return this.lineNum;
     }
     
     public int getColumnNum() {
+        if (this.lines != null) {
+            return this.lines.columnNum(this.offset);
+        }
+
         return this.columnNum;
     }
-}
\ No newline at end of file
+}
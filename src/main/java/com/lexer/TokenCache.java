@@ -0,0 +1,347 @@
+package com.lexer;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Token streams of source files kept on disk between runs.
+ * entries are named by a hash of the file content and the lexer version,
+ * so an unchanged file is mapped back instead of being lexed again.
+ * the least recently used entries are removed when the cache grows
+ * over its size limit
+ */
+public final class TokenCache {
+    static final String SUFFIX = ".tokens";
+    private static final int MAGIC = 0x504c4c54;    // "PLLT"
+    private static final int FORMAT = 2;
+    private static final int HEADER_SIZE = 20;
+
+    private final Path directory;
+    private final long maxSize;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong size = new AtomicLong();   // bytes of all entries, counted once at startup
+
+
+    /** TokenCache construct, the directory is created when missing
+     * @param directory
+     * @param maxSize size limit of all entries in bytes
+     * @throws IOException
+     */
+    public TokenCache(Path directory, long maxSize) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxSize = maxSize;
+        this.size.set(this.list(new ArrayList<Path>(), new HashMap<Path, FileTime>()));
+    }
+
+
+    /** Get the tokens of a UTF-8 source file, from the cache when the
+     * same content was lexed before
+     * @param path
+     * @return TokenStream
+     * @throws IOException
+     */
+    public TokenStream tokenize(Path path) throws IOException {
+        byte[] content = Files.readAllBytes(path);
+        Path entry = this.directory.resolve(key(content) + SUFFIX);
+
+        TokenStream tokens = this.load(entry);
+        if (tokens != null) {
+            this.hits.incrementAndGet();
+            return tokens;
+        }
+
+        this.misses.incrementAndGet();
+        tokens = Lexer.fromUtf8(content).tokenizeCompact();
+
+        this.store(entry, tokens);
+        this.evict();
+
+        return tokens;
+    }
+
+
+    /** Get the number of files found in the cache
+     * @return long
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+
+    /** Get the number of files lexed because they were not cached
+     * @return long
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+
+    /** Get the name of the entry of a file content
+     * @param content
+     * @return String hex SHA-256 of the lexer version and the content
+     */
+    static String key(byte[] content) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);     // every JVM has SHA-256
+        }
+
+        digest.update(ByteBuffer.allocate(4).putInt(Lexer.VERSION).array());
+        byte[] hash = digest.digest(content);
+
+        StringBuilder key = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            key.append(Character.forDigit((b >> 4) & 0xf, 16));
+            key.append(Character.forDigit(b & 0xf, 16));
+        }
+
+        return key.toString();
+    }
+
+
+    /** Map an entry, the token values stay in the mapped file
+     * @param entry
+     * @return TokenStream or null when there is no usable entry
+     * @throws IOException
+     */
+    private TokenStream load(Path entry) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+
+        TokenStream tokens;
+        try {
+            tokens = read(buffer);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return null;    // cut short by a crash or corrupt, written again below
+        }
+
+        if (tokens != null) {
+            try {
+                Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            } catch (NoSuchFileException e) {
+                // evicted meanwhile, the mapping is still valid
+            }
+        }
+
+        return tokens;
+    }
+
+
+    /** Read a token stream stored by write()
+     * @param buffer
+     * @return TokenStream or null when the entry has another format
+     * @throws IllegalArgumentException when the header does not fit the entry
+     */
+    static TokenStream read(ByteBuffer buffer) {
+        if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT) {
+            return null;
+        }
+
+        int size = buffer.getInt();
+        int lineCount = buffer.getInt();
+        int textLength = buffer.getInt();
+
+        // checked before anything is allocated from them
+        long expected = size + padding(size) + (size * 4L + lineCount) * 4 + size * 8L + textLength * 2L;
+        if (size < 0 || lineCount < 0 || textLength < 0 || expected > buffer.remaining()) {
+            throw new IllegalArgumentException("token cache entry header does not fit its " + buffer.remaining() + " bytes");
+        }
+
+        byte[] tokenClasses = new byte[size];
+        buffer.get(tokenClasses);
+        buffer.position(buffer.position() + padding(size));
+
+        IntBuffer ints = buffer.asIntBuffer();
+        int[] starts = new int[size];
+        int[] lengths = new int[size];
+        int[] offsets = new int[size];
+        int[] ends = new int[size];
+        int[] lineStarts = new int[lineCount];
+        ints.get(starts).get(lengths).get(offsets).get(ends).get(lineStarts);
+        buffer.position(buffer.position() + (size * 4 + lineCount) * 4);
+
+        long[] numbers = new long[size];
+        buffer.asLongBuffer().get(numbers);
+        buffer.position(buffer.position() + size * 8);
+
+        CharBuffer text = buffer.slice().asCharBuffer();
+        if (text.remaining() != textLength) {
+            throw new IllegalArgumentException("token cache entry is " + text.remaining() + " chars, expected " + textLength);
+        }
+
+        return new TokenStream(text, LineIndex.of(lineStarts), tokenClasses, starts, lengths, offsets, ends, numbers);
+    }
+
+
+    /** Write a token stream with its text and line starts in
+     * fixed size fields
+     * @param tokens
+     * @return ByteBuffer ready to be read
+     */
+    static ByteBuffer write(TokenStream tokens) {
+        int size = tokens.size();
+        int[] lineStarts = tokens.getLines().lineStarts();
+        CharSequence text = tokens.getText();
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + size + padding(size) +
+            (size * 4 + lineStarts.length) * 4 + size * 8 + text.length() * 2);
+        buffer.putInt(MAGIC).putInt(FORMAT).putInt(size).putInt(lineStarts.length).putInt(text.length());
+
+        for (int i = 0; i < size; i++) {
+            buffer.put((byte) tokens.getTokenClass(i).ordinal());
+        }
+        buffer.position(buffer.position() + padding(size));
+
+        for (int i = 0; i < size; i++) {
+            buffer.putInt(tokens.getStart(i));
+        }
+        for (int i = 0; i < size; i++) {
+            buffer.putInt(tokens.getLength(i));
+        }
+        for (int i = 0; i < size; i++) {
+            buffer.putInt(tokens.getOffset(i));
+        }
+        for (int i = 0; i < size; i++) {
+            buffer.putInt(tokens.getEnd(i));
+        }
+        for (int lineStart : lineStarts) {
+            buffer.putInt(lineStart);
+        }
+        for (int i = 0; i < size; i++) {
+            buffer.putLong(tokens.getNumber(i));
+        }
+        for (int i = 0; i < text.length(); i++) {
+            buffer.putChar(text.charAt(i));
+        }
+
+        buffer.flip();
+        return buffer;
+    }
+
+
+    // bytes after the token classes so the ints are aligned
+    private static int padding(int size) {
+        return -size & 3;
+    }
+
+
+    /** Write an entry through a temporary file so readers
+     * never see it half written
+     * @param entry
+     * @param tokens
+     * @throws IOException
+     */
+    private void store(Path entry, TokenStream tokens) throws IOException {
+        Path temporary = Files.createTempFile(this.directory, entry.getFileName().toString(), ".tmp");
+
+        try {
+            long stored = 0;
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = write(tokens);
+                while (buffer.hasRemaining()) {
+                    stored += channel.write(buffer);
+                }
+            }
+
+            synchronized (this) {
+                long replaced = 0;
+                try {
+                    replaced = Files.size(entry);   // stored by another run meanwhile
+                } catch (NoSuchFileException e) {
+                    // a new entry
+                }
+
+                Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                this.size.addAndGet(stored - replaced);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+
+    /** Remove the least recently used entries until the
+     * cache is within its size limit, the directory is only
+     * listed when the running size is over the limit
+     * @throws IOException
+     */
+    private void evict() throws IOException {
+        if (this.size.get() <= this.maxSize) {
+            return;
+        }
+
+        synchronized (this) {
+            List<Path> entries = new ArrayList<Path>();
+            Map<Path, FileTime> times = new HashMap<Path, FileTime>();
+            // counted again, other runs may share the directory
+            long total = this.list(entries, times);
+
+            if (total > this.maxSize) {
+                entries.sort(Comparator.comparing(times::get));
+
+                for (int i = 0; i < entries.size() && total > this.maxSize; i++) {
+                    try {
+                        long size = Files.size(entries.get(i));
+                        Files.delete(entries.get(i));
+                        total -= size;
+                    } catch (NoSuchFileException e) {
+                        // removed by another run
+                    }
+                }
+            }
+
+            this.size.set(total);
+        }
+    }
+
+
+    /** List the entries with their last use
+     * @param entries filled with the entries
+     * @param times filled with the last modified time of every entry
+     * @return long bytes of all entries
+     * @throws IOException
+     */
+    private long list(List<Path> entries, Map<Path, FileTime> times) throws IOException {
+        long total = 0;
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, "*" + SUFFIX)) {
+            for (Path entry : stream) {
+                try {
+                    total += Files.size(entry);
+                    times.put(entry, Files.getLastModifiedTime(entry));
+                    entries.add(entry);
+                } catch (NoSuchFileException e) {
+                    // removed by another run
+                }
+            }
+        }
+
+        return total;
+    }
+}
@@ -0,0 +1,330 @@
+package com.lexer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Binary form of token lists for passing them between processes.
+ * after the header comes a table of the distinct token values in UTF-8,
+ * then one record per token: the token class ordinal as a byte, the index
+ * of its value in the table for the classes that carry one, and the offset,
+ * line and column as varints. offsets and lines are stored as the difference
+ * to the previous token
+ */
+public final class TokenFormat {
+    static final int MAGIC = 0x504c4c53;    // "PLLS"
+    static final int VERSION = 1;
+    private static final TokenClass[] TOKEN_CLASSES = TokenClass.values();
+
+
+    private TokenFormat() {
+    }
+
+
+    /** Encode the tokens of Lexer.tokenize()
+     * @param tokens
+     * @return ByteBuffer ready to be read
+     */
+    public static ByteBuffer encode(List<Token> tokens) {
+        Encoder encoder = new Encoder();
+        for (Token token : tokens) {
+            encoder.add(token.getTokenClass(), token.getValue(), token.getOffset(), token.getLineNum(), token.getColumnNum());
+        }
+
+        return encoder.finish();
+    }
+
+
+    /** Encode the tokens of Lexer.tokenizeCompact()
+     * @param tokens
+     * @return ByteBuffer ready to be read
+     */
+    public static ByteBuffer encode(TokenStream tokens) {
+        Encoder encoder = new Encoder();
+        for (int i = 0; i < tokens.size(); i++) {
+            encoder.add(tokens.getTokenClass(i), tokens.getValue(i), tokens.getOffset(i), tokens.getLineNum(i), tokens.getColumnNum(i));
+        }
+
+        return encoder.finish();
+    }
+
+
+    /** Decode all tokens into token objects
+     * @param buffer read from its position, which is left unchanged
+     * @return ArrayList<Token>
+     */
+    public static ArrayList<Token> decode(ByteBuffer buffer) {
+        Reader reader = read(buffer);
+        ArrayList<Token> tokens = new ArrayList<Token>(reader.size());
+
+        while (reader.next()) {
+            tokens.add(new Token(reader.getTokenClass(), reader.getValue(), reader.getOffset(),
+                reader.getLineNum(), reader.getColumnNum()));
+        }
+
+        return tokens;
+    }
+
+
+    /** Reader over the encoded tokens, positioned before the first token
+     * @param buffer read from its position, which is left unchanged
+     * @return Reader
+     * @throws IllegalArgumentException when the buffer is not in this format
+     */
+    public static Reader read(ByteBuffer buffer) {
+        return new Reader(buffer);
+    }
+
+
+    private static void putVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+
+        out.write(value);
+    }
+
+
+    // signed values are zigzag encoded so small negative ones stay short
+    private static void putSignedVarint(ByteArrayOutputStream out, int value) {
+        putVarint(out, (value << 1) ^ (value >> 31));
+    }
+
+
+    /** Collects the value table and the token records
+     */
+    private static final class Encoder {
+        private final Map<String, Integer> ids = new HashMap<String, Integer>();
+        private final ByteArrayOutputStream values = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream records = new ByteArrayOutputStream();
+        private int size = 0;
+        private int offset = 0;
+        private int lineNum = 1;
+
+
+        void add(TokenClass tokenClass, String value, int offset, int lineNum, int columnNum) {
+            this.records.write(tokenClass.ordinal());
+
+            if (Lexer.hasValue(tokenClass)) {
+                Integer id = this.ids.get(value);
+
+                if (id == null) {
+                    id = this.ids.size();
+                    this.ids.put(value, id);
+
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    putVarint(this.values, bytes.length);
+                    this.values.write(bytes, 0, bytes.length);
+                }
+
+                putVarint(this.records, id);
+            }
+
+            putSignedVarint(this.records, offset - this.offset);
+            putSignedVarint(this.records, lineNum - this.lineNum);
+            putVarint(this.records, columnNum);
+
+            this.offset = offset;
+            this.lineNum = lineNum;
+            this.size++;
+        }
+
+
+        ByteBuffer finish() {
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            putVarint(header, this.size);
+            putVarint(header, this.ids.size());
+
+            ByteBuffer buffer = ByteBuffer.allocate(5 + header.size() + this.values.size() + this.records.size());
+            buffer.putInt(MAGIC).put((byte) VERSION);
+            buffer.put(header.toByteArray()).put(this.values.toByteArray()).put(this.records.toByteArray());
+
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+
+    /** Forward reader decoding one token at a time straight from the
+     * buffer, values are decoded from the table when they are asked for
+     */
+    public static final class Reader {
+        private final ByteBuffer buffer;
+        private final int size;
+        private final int[] valuePositions;
+        private final int[] valueLengths;
+        private final String[] values;
+        private int position;
+        private int index = -1;
+
+        private TokenClass tokenClass;
+        private int valueId;
+        private int offset = 0;
+        private int lineNum = 1;
+        private int columnNum;
+
+
+        private Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.position = buffer.position();
+
+            if (buffer.remaining() < 5 || buffer.getInt(this.position) != MAGIC) {
+                throw new IllegalArgumentException("not an encoded token list");
+            }
+
+            int version = buffer.get(this.position + 4);
+            if (version != VERSION) {
+                throw new IllegalArgumentException("unsupported token format version " + version);
+            }
+
+            this.position += 5;
+            this.size = this.getVarint();
+
+            // only the places of the values are read here
+            int count = this.getVarint();
+            this.valuePositions = new int[count];
+            this.valueLengths = new int[count];
+            this.values = new String[count];
+
+            for (int i = 0; i < count; i++) {
+                this.valueLengths[i] = this.getVarint();
+                this.valuePositions[i] = this.position;
+                this.position += this.valueLengths[i];
+            }
+        }
+
+
+        private int getVarint() {
+            int value = 0;
+
+            for (int shift = 0; ; shift += 7) {
+                byte b = this.buffer.get(this.position++);
+                value |= (b & 0x7f) << shift;
+
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+
+
+        private int getSignedVarint() {
+            int value = this.getVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+
+        /** Get the number of tokens
+         * @return int
+         */
+        public int size() {
+            return this.size;
+        }
+
+
+        /** Move to the next token
+         * @return boolean false when there are no more tokens
+         */
+        public boolean next() {
+            if (this.index + 1 >= this.size) {
+                this.index = this.size;
+                return false;
+            }
+
+            this.index++;
+            this.tokenClass = TOKEN_CLASSES[this.buffer.get(this.position++)];
+            this.valueId = Lexer.hasValue(this.tokenClass) ? this.getVarint() : -1;
+            this.offset += this.getSignedVarint();
+            this.lineNum += this.getSignedVarint();
+            this.columnNum = this.getVarint();
+
+            return true;
+        }
+
+
+        public int index() {
+            return this.index;
+        }
+
+
+        public TokenClass getTokenClass() {
+            return this.tokenClass;
+        }
+
+
+        /** Get the value of the current token, tokens with
+         * the same value share one string
+         * @return String
+         */
+        public String getValue() {
+            if (this.valueId < 0) {
+                return "";
+            }
+
+            String value = this.values[this.valueId];
+            if (value == null) {
+                ByteBuffer slice = this.buffer.duplicate();
+                slice.position(this.valuePositions[this.valueId]);
+                slice.limit(this.valuePositions[this.valueId] + this.valueLengths[this.valueId]);
+
+                value = StandardCharsets.UTF_8.decode(slice).toString();
+                this.values[this.valueId] = value;
+            }
+
+            return value;
+        }
+
+
+        /** Get the value of the current INTEGER token
+         * @return long
+         * @throws ArithmeticException when the literal does not fit in a long
+         * @throws IllegalStateException for the other token classes
+         */
+        public long getLong() {
+            if (this.tokenClass != TokenClass.INTEGER) {
+                throw new IllegalStateException(this.tokenClass + " token has no long value");
+            }
+
+            String value = this.getValue();
+            return NumberLiteral.toLong(NumberLiteral.parse(this.tokenClass, value, 0, value.length()));
+        }
+
+
+        /** Get the value of the current INTEGER or DOUBLE token
+         * @return double
+         * @throws IllegalStateException for the other token classes
+         */
+        public double getDouble() {
+            if (this.tokenClass != TokenClass.INTEGER && this.tokenClass != TokenClass.DOUBLE) {
+                throw new IllegalStateException(this.tokenClass + " token has no number value");
+            }
+
+            String value = this.getValue();
+            return NumberLiteral.toDouble(this.tokenClass, NumberLiteral.parse(this.tokenClass, value, 0, value.length()),
+                value, 0, value.length());
+        }
+
+
+        /** Get the position of the first char of the current token
+         * @return int or -1 for tokens not made by a lexer
+         */
+        public int getOffset() {
+            return this.offset;
+        }
+
+
+        public int getLineNum() {
+            return this.lineNum;
+        }
+
+
+        public int getColumnNum() {
+            return this.columnNum;
+        }
+    }
+}
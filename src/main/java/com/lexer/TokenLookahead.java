@@ -0,0 +1,399 @@
+package com.lexer;
+
+import java.util.Arrays;
+
+/** Lookahead over the tokens of a lexer for parsers. tokens are lexed
+ * when they are first peeked at and kept in a ring of primitive arrays,
+ * so no objects are created per token once the ring is full. marks keep
+ * the tokens after them for backtracking, the ring only grows when a
+ * mark holds more tokens than it has room for.
+ * values of sources that drop their chars are copied into reused builders
+ */
+public final class TokenLookahead {
+    private static final TokenClass[] TOKEN_CLASSES = TokenClass.values();
+    static final int DEFAULT_CAPACITY = 16;
+
+    private final Lexer lexer;
+    private CharSequence text;          // null when values are copied
+    private LineIndex lines;
+    private byte[] tokenClasses;
+    private int[] starts;
+    private int[] lengths;
+    private int[] offsets;
+    private int[] ends;
+    private long[] numbers;
+    private int[] lineNums;             // taken when lexed from an index that forgets lines
+    private int[] columnNums;
+    private StringBuilder[] values;     // copied values, created on first use
+    private int mask;
+
+    private long position = 0;          // token indexes from the first token
+    private long fetched = 0;
+    private long end = -1;              // index of END_OF_INPUT once lexed
+    private long[] marks = new long[4];
+    private int markCount = 0;
+
+
+    /** TokenLookahead construct with room for DEFAULT_CAPACITY tokens
+     * @param lexer not to be used by anything else from now on
+     * @return
+     */
+    public TokenLookahead(Lexer lexer) {
+        this(lexer, DEFAULT_CAPACITY);
+    }
+
+
+    /** TokenLookahead construct
+     * @param lexer not to be used by anything else from now on
+     * @param capacity largest lookahead, rounded up to a power of two
+     * @return
+     */
+    public TokenLookahead(Lexer lexer, int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity out of range: " + capacity);
+        }
+
+        this.lexer = lexer;
+        this.allocate(capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1);
+    }
+
+
+    /** Create empty arrays
+     * @param capacity power of two
+     */
+    private void allocate(int capacity) {
+        this.tokenClasses = new byte[capacity];
+        this.starts = new int[capacity];
+        this.lengths = new int[capacity];
+        this.offsets = new int[capacity];
+        this.ends = new int[capacity];
+        this.numbers = new long[capacity];
+        this.lineNums = new int[capacity];
+        this.columnNums = new int[capacity];
+        this.values = new StringBuilder[capacity];
+        this.mask = capacity - 1;
+    }
+
+
+    /** Store the token just scanned, called by Lexer.advanceTo()
+     * @param tokenClass
+     * @param source
+     * @param valueStart
+     * @param valueEnd
+     * @param offset
+     * @param end
+     * @param number
+     */
+    void add(TokenClass tokenClass, Source source, int valueStart, int valueEnd, int offset, int end, long number) {
+        int slot = (int) this.fetched & this.mask;
+
+        this.text = source.text();
+        this.lines = source.lines();
+
+        int start = 0;
+        int length = 0;
+
+        if (Lexer.hasValue(tokenClass)) {
+            if (this.text != null) {
+                start = valueStart;
+                length = valueEnd - valueStart;
+            } else {
+                // the chars may be released before the token is consumed
+                if (this.values[slot] == null) {
+                    this.values[slot] = new StringBuilder();
+                }
+
+                this.values[slot].setLength(0);
+                source.appendTo(this.values[slot], valueStart, valueEnd);
+                length = this.values[slot].length();
+            }
+        }
+
+        this.tokenClasses[slot] = (byte) tokenClass.ordinal();
+        this.starts[slot] = start;
+        this.lengths[slot] = length;
+        this.offsets[slot] = offset;
+        this.ends[slot] = end;
+        this.numbers[slot] = number;
+
+        if (this.lines.isWindow()) {
+            this.lineNums[slot] = this.lines.lineNum(offset);
+            this.columnNums[slot] = this.lines.columnNum(offset);
+        }
+
+        if (tokenClass == TokenClass.END_OF_INPUT) {
+            this.end = this.fetched;
+        }
+
+        this.fetched++;
+    }
+
+
+    /** Find the ring slot of a token ahead, lexing up to it first
+     * @param k 0 for the next token to consume
+     * @return int
+     */
+    private int slot(int k) {
+        if (k < 0 || k > this.mask) {
+            throw new IndexOutOfBoundsException("lookahead " + k + ", capacity " + (this.mask + 1));
+        }
+
+        long index = this.position + k;
+
+        while (index >= this.fetched && this.end < 0) {
+            long oldest = this.markCount > 0 ? this.marks[0] : this.position;
+            if (this.fetched - oldest > this.mask) {
+                this.grow(oldest);
+            }
+
+            this.lexer.advanceTo(this);
+        }
+
+        // every token past the end is END_OF_INPUT
+        if (this.end >= 0 && index > this.end) {
+            index = this.end;
+        }
+
+        return (int) index & this.mask;
+    }
+
+
+    /** Double the ring, the tokens kept for marks are moved to their new slots
+     * @param oldest index of the first token still needed
+     */
+    private void grow(long oldest) {
+        byte[] tokenClasses = this.tokenClasses;
+        int[] starts = this.starts;
+        int[] lengths = this.lengths;
+        int[] offsets = this.offsets;
+        int[] ends = this.ends;
+        long[] numbers = this.numbers;
+        int[] lineNums = this.lineNums;
+        int[] columnNums = this.columnNums;
+        StringBuilder[] values = this.values;
+        int mask = this.mask;
+
+        this.allocate((mask + 1) * 2);
+
+        for (long index = oldest; index < this.fetched; index++) {
+            int from = (int) index & mask;
+            int to = (int) index & this.mask;
+
+            this.tokenClasses[to] = tokenClasses[from];
+            this.starts[to] = starts[from];
+            this.lengths[to] = lengths[from];
+            this.offsets[to] = offsets[from];
+            this.ends[to] = ends[from];
+            this.numbers[to] = numbers[from];
+            this.lineNums[to] = lineNums[from];
+            this.columnNums[to] = columnNums[from];
+            this.values[to] = values[from];
+        }
+    }
+
+
+    /** Get the class of the next token to consume
+     * @return TokenClass
+     */
+    public TokenClass peek() {
+        return this.peek(0);
+    }
+
+
+    /** Get the class of a token ahead
+     * @param k 0 for the next token to consume, less than the capacity
+     * @return TokenClass
+     */
+    public TokenClass peek(int k) {
+        int slot = this.slot(k);     // may grow the ring
+        return TOKEN_CLASSES[this.tokenClasses[slot]];
+    }
+
+
+    /** Move past the next token, END_OF_INPUT is never passed
+     * @return TokenClass of the consumed token
+     */
+    public TokenClass consume() {
+        TokenClass tokenClass = this.peek(0);
+
+        if (this.position != this.end) {
+            this.position++;
+        }
+
+        return tokenClass;
+    }
+
+
+    /** Remember the position for reset(), marks nest
+     */
+    public void mark() {
+        if (this.markCount == this.marks.length) {
+            this.marks = Arrays.copyOf(this.marks, this.markCount * 2);
+        }
+
+        this.marks[this.markCount++] = this.position;
+    }
+
+
+    /** Go back to the position of the last mark and remove the mark
+     */
+    public void reset() {
+        this.checkMarked();
+        this.position = this.marks[--this.markCount];
+    }
+
+
+    /** Remove the last mark and stay at the current position
+     */
+    public void release() {
+        this.checkMarked();
+        this.markCount--;
+    }
+
+
+    private void checkMarked() {
+        if (this.markCount == 0) {
+            throw new IllegalStateException("no mark");
+        }
+    }
+
+
+    /** Get the number of tokens consumed so far
+     * @return long
+     */
+    public long index() {
+        return this.position;
+    }
+
+
+    /** Get the position of the first char of a token ahead in the source
+     * @param k
+     * @return int
+     */
+    public int getOffset(int k) {
+        int slot = this.slot(k);
+        return this.offsets[slot];
+    }
+
+
+    /** Get the position of the last char of a token ahead in the source,
+     * for END_OF_INPUT the position where lexing stopped
+     * @param k
+     * @return int
+     */
+    public int getEnd(int k) {
+        int slot = this.slot(k);
+        return this.ends[slot];
+    }
+
+
+    public int getLineNum(int k) {
+        int slot = this.slot(k);
+        return this.lines.isWindow() ? this.lineNums[slot] : this.lines.lineNum(this.offsets[slot]);
+    }
+
+
+    public int getColumnNum(int k) {
+        int slot = this.slot(k);
+        return this.lines.isWindow() ? this.columnNums[slot] : this.lines.columnNum(this.offsets[slot]);
+    }
+
+
+    /** Get the value of a token ahead without copying it
+     * @param slot
+     * @return CharSequence "" for the token classes without a value
+     */
+    private CharSequence value(int slot) {
+        if (this.lengths[slot] == 0) {
+            return "";
+        } else if (this.text == null) {
+            return this.values[slot];
+        }
+
+        return this.text.subSequence(this.starts[slot], this.starts[slot] + this.lengths[slot]);
+    }
+
+
+    /** Get the value of a token ahead as a string, "" for the
+     * token classes without a value
+     * @param k
+     * @return String
+     */
+    public String getValue(int k) {
+        return this.value(this.slot(k)).toString();
+    }
+
+
+    /** Compare the value of a token ahead without creating a string
+     * @param k
+     * @param value
+     * @return boolean
+     */
+    public boolean valueEquals(int k, CharSequence value) {
+        int slot = this.slot(k);
+        int length = this.lengths[slot];
+
+        if (length != value.length()) {
+            return false;
+        }
+
+        CharSequence text = this.text == null ? this.values[slot] : this.text;
+        int start = this.text == null ? 0 : this.starts[slot];
+
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(start + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+
+    /** Get the value of an INTEGER token ahead without parsing its text
+     * @param k
+     * @return long
+     * @throws ArithmeticException when the literal does not fit in a long
+     * @throws IllegalStateException for the other token classes
+     */
+    public long getLong(int k) {
+        TokenClass tokenClass = this.peek(k);
+        if (tokenClass != TokenClass.INTEGER) {
+            throw new IllegalStateException(tokenClass + " token has no long value");
+        }
+
+        int slot = this.slot(k);
+        return NumberLiteral.toLong(this.numbers[slot]);
+    }
+
+
+    /** Get the symbol ID of an IDENTIFIER token ahead lexed with a symbol table
+     * @param k
+     * @return int or -1 when the identifier was not interned
+     */
+    public int getSymbol(int k) {
+        if (this.peek(k) != TokenClass.IDENTIFIER) {
+            return -1;
+        }
+
+        int slot = this.slot(k);
+        return (int) this.numbers[slot] - 1;
+    }
+
+
+    /** Get the value of an INTEGER or DOUBLE token ahead without parsing its text
+     * @param k
+     * @return double
+     * @throws IllegalStateException for the other token classes
+     */
+    public double getDouble(int k) {
+        TokenClass tokenClass = this.peek(k);
+        if (tokenClass != TokenClass.INTEGER && tokenClass != TokenClass.DOUBLE) {
+            throw new IllegalStateException(tokenClass + " token has no number value");
+        }
+
+        int slot = this.slot(k);
+        CharSequence value = this.value(slot);
+        return NumberLiteral.toDouble(tokenClass, this.numbers[slot], value, 0, value.length());
+    }
+}
@@ -0,0 +1,200 @@
+package com.lexer;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Publishes the tokens of a lexer in batches to one subscriber, so the
+ * stages of a compiler can run as a pipeline on different threads.
+ * tokens are only lexed while the subscriber has demand, a slow subscriber
+ * holds the lexer back instead of the whole input being lexed up front.
+ * every batch is full except the last one, which ends with END_OF_INPUT
+ */
+public final class TokenPublisher implements Flow.Publisher<Token[]> {
+    static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final Lexer lexer;
+    private final int batchSize;
+    private final Executor executor;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+
+    /** TokenPublisher construct lexing on the common fork/join pool
+     * @param lexer not to be used by anything else from now on
+     * @return
+     */
+    public TokenPublisher(Lexer lexer) {
+        this(lexer, DEFAULT_BATCH_SIZE, ForkJoinPool.commonPool());
+    }
+
+
+    /** TokenPublisher construct
+     * @param lexer not to be used by anything else from now on
+     * @param batchSize number of tokens in a batch
+     * @param executor runs the lexer and the calls to the subscriber
+     * @return
+     */
+    public TokenPublisher(Lexer lexer, int batchSize, Executor executor) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+        }
+
+        this.lexer = Objects.requireNonNull(lexer);
+        this.batchSize = batchSize;
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+
+    /** Subscribe to the tokens, a lexer can only be read once so
+     * any later subscriber gets an IllegalStateException
+     * @param subscriber
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super Token[]> subscriber) {
+        Objects.requireNonNull(subscriber);
+
+        if (!this.subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("the tokens are already published"));
+            return;
+        }
+
+        subscriber.onSubscribe(new TokenSubscription(subscriber));
+    }
+
+
+    /** Demand of the subscriber, the lexer runs on the executor whenever
+     * the demand rises from zero and keeps running until it is used up
+     */
+    private final class TokenSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super Token[]> subscriber;
+        private final Iterator<Token> tokens;
+        private final AtomicLong demand = new AtomicLong();
+        private volatile boolean cancelled = false;
+        private volatile Throwable error;       // invalid request, signalled by run()
+
+
+        TokenSubscription(Flow.Subscriber<? super Token[]> subscriber) {
+            this.subscriber = subscriber;
+            this.tokens = TokenPublisher.this.lexer.iterator();
+        }
+
+
+        /** Ask for more batches
+         * @param n number of batches, Long.MAX_VALUE for all of them
+         */
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                this.error = new IllegalArgumentException("requested batches must be positive: " + n);
+                n = 1;  // wakes up run() to signal the error
+            }
+
+            long current;
+            long next;
+            do {
+                current = this.demand.get();
+                if (current == Long.MAX_VALUE || this.cancelled) {
+                    return;
+                }
+
+                next = current + n < 0 ? Long.MAX_VALUE : current + n;
+            } while (!this.demand.compareAndSet(current, next));
+
+            if (current == 0) {
+                TokenPublisher.this.executor.execute(this);
+            }
+        }
+
+
+        /** Stop publishing, a batch being lexed is
+         * given up after its current token
+         */
+        @Override
+        public void cancel() {
+            this.cancelled = true;
+        }
+
+
+        @Override
+        public void run() {
+            long emitted = 0;
+            long requested = this.demand.get();
+
+            while (true) {
+                while (emitted < requested) {
+                    if (this.cancelled) {
+                        return;
+                    }
+
+                    if (this.error != null) {
+                        this.cancelled = true;
+                        this.subscriber.onError(this.error);
+                        return;
+                    }
+
+                    Token[] batch;
+                    try {
+                        batch = this.nextBatch();
+                    } catch (RuntimeException e) {
+                        this.cancelled = true;
+                        this.subscriber.onError(e);
+                        return;
+                    }
+
+                    if (batch == null) {
+                        return;     // cancelled meanwhile
+                    }
+
+                    this.subscriber.onNext(batch);
+                    emitted++;
+
+                    if (!this.tokens.hasNext()) {
+                        this.cancelled = true;
+                        this.subscriber.onComplete();
+                        return;
+                    }
+                }
+
+                requested = this.demand.addAndGet(-emitted);
+                emitted = 0;
+
+                if (requested == 0) {
+                    return;
+                }
+            }
+        }
+
+
+        /** Lex the next batch
+         * @return Token[] or null when cancelled
+         */
+        private Token[] nextBatch() {
+            Token[] batch = new Token[TokenPublisher.this.batchSize];
+            int count = 0;
+
+            while (count < batch.length && this.tokens.hasNext()) {
+                if (this.cancelled) {
+                    return null;
+                }
+
+                batch[count++] = this.tokens.next();
+            }
+
+            return count == batch.length ? batch : Arrays.copyOf(batch, count);
+        }
+    }
+}
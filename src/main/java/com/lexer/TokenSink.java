@@ -0,0 +1,18 @@
+package com.lexer;
+
+/** Receiver of the tokens of Lexer.tokenize(TokenSink), tokens are
+ * given as positions in the source code so no objects are created per token
+ */
+@FunctionalInterface
+public interface TokenSink {
+
+    /** Take one token
+     * @param tokenClass
+     * @param offset position of the first char of the token
+     * @param end position of the last char of the token,
+     * for END_OF_INPUT the position where lexing stopped
+     * @param valueStart position of the value in the source code
+     * @param valueLength 0 for the token classes without a value
+     */
+    void accept(TokenClass tokenClass, int offset, int end, int valueStart, int valueLength);
+}
@@ -0,0 +1,282 @@
+package com.lexer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/** Tokens kept outside the heap in fixed size records, for inputs with
+ * more tokens than token objects or the arrays of a TokenStream would
+ * fit in. records are written to direct buffers or to a file mapped in
+ * segments, the heap only holds the list of segments so garbage collection
+ * does not grow with the input. values are read back from the source
+ * when they are asked for, so they are not available for lexers over
+ * a Reader. the store must be closed when it is no longer used.
+ * direct buffers count against -XX:MaxDirectMemorySize, which defaults
+ * to the heap size, so inputs with more records than the heap holds
+ * need a file or a larger limit
+ */
+public final class TokenStore implements TokenSink, AutoCloseable {
+    private static final TokenClass[] TOKEN_CLASSES = TokenClass.values();
+
+    // token class, offset, end, value start and value length as ints
+    static final int RECORD_SIZE = 20;
+    static final int SEGMENT_SHIFT = 16;
+    private static final int SEGMENT_RECORDS = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_RECORDS - 1;
+
+    private final Source source;
+    private final CharSequence text;    // null for buffered sources
+    private final LineIndex lines;
+    private final FileChannel channel;  // null for direct memory
+    private ByteBuffer[] segments = new ByteBuffer[16];
+    private int segmentCount = 0;
+    private int size = 0;
+    private boolean closed = false;
+
+
+    /** TokenStore construct
+     * @param source the tokens are lexed from
+     * @param file written with the records, null to keep them in direct memory
+     * @throws IOException
+     */
+    TokenStore(Source source, Path file) throws IOException {
+        this.source = source;
+        this.text = source.text();
+        source.keepLines();
+        this.lines = source.lines();
+
+        if (file == null) {
+            this.channel = null;
+        } else {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+    }
+
+
+    /** Append a token record, used by Lexer.tokenize(TokenSink)
+     * @param tokenClass
+     * @param offset
+     * @param end
+     * @param valueStart
+     * @param valueLength
+     * @throws UncheckedIOException when the file cannot be extended
+     */
+    @Override
+    public void accept(TokenClass tokenClass, int offset, int end, int valueStart, int valueLength) {
+        this.checkOpen();
+
+        if (this.size == Integer.MAX_VALUE) {
+            throw new IllegalStateException("token store is full");
+        }
+
+        int segment = this.size >>> SEGMENT_SHIFT;
+        if (segment == this.segmentCount) {
+            this.addSegment();
+        }
+
+        int position = (this.size & SEGMENT_MASK) * RECORD_SIZE;
+        this.segments[segment]
+            .putInt(position, tokenClass.ordinal())
+            .putInt(position + 4, offset)
+            .putInt(position + 8, end)
+            .putInt(position + 12, valueStart)
+            .putInt(position + 16, valueLength);
+        this.size++;
+    }
+
+
+    private void addSegment() {
+        if (this.segmentCount == this.segments.length) {
+            this.segments = Arrays.copyOf(this.segments, this.segmentCount * 2);
+        }
+
+        int bytes = SEGMENT_RECORDS * RECORD_SIZE;
+
+        if (this.channel == null) {
+            this.segments[this.segmentCount] = ByteBuffer.allocateDirect(bytes);
+        } else {
+            try {
+                this.segments[this.segmentCount] = this.channel.map(FileChannel.MapMode.READ_WRITE,
+                    (long) this.segmentCount * bytes, bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        this.segmentCount++;
+    }
+
+
+    /** Release the records, the store cannot be used afterwards.
+     * records of a file are written out before the file is closed.
+     * the memory itself is returned once the buffers are collected
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+
+        this.closed = true;
+
+        try {
+            if (this.channel != null) {
+                for (int i = 0; i < this.segmentCount; i++) {
+                    ((MappedByteBuffer) this.segments[i]).force();
+                }
+
+                this.channel.close();
+            }
+        } finally {
+            this.segments = null;
+            this.segmentCount = 0;
+        }
+    }
+
+
+    private void checkOpen() {
+        if (this.closed) {
+            throw new IllegalStateException("token store is closed");
+        }
+    }
+
+
+    private void checkIndex(int index) {
+        this.checkOpen();
+
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("token index " + index + ", size " + this.size);
+        }
+    }
+
+
+    /** Read one int of a record
+     * @param index
+     * @param field byte offset of the field in the record
+     * @return int
+     */
+    private int field(int index, int field) {
+        this.checkIndex(index);
+        return this.segments[index >>> SEGMENT_SHIFT].getInt((index & SEGMENT_MASK) * RECORD_SIZE + field);
+    }
+
+
+    public int size() {
+        return this.size;
+    }
+
+
+    public TokenClass getTokenClass(int index) {
+        return TOKEN_CLASSES[this.field(index, 0)];
+    }
+
+
+    /** Get the position of the first char of the token in the source
+     * @param index
+     * @return int
+     */
+    public int getOffset(int index) {
+        return this.field(index, 4);
+    }
+
+
+    /** Get the position of the last char of the token in the source,
+     * for END_OF_INPUT the position where lexing stopped
+     * @param index
+     * @return int
+     */
+    public int getEnd(int index) {
+        return this.field(index, 8);
+    }
+
+
+    /** Get the start of the token value in the source
+     * @param index
+     * @return int
+     */
+    public int getStart(int index) {
+        return this.field(index, 12);
+    }
+
+
+    public int getLength(int index) {
+        return this.field(index, 16);
+    }
+
+
+    /** Get the line of the first char of the token,
+     * looked up in the line index of the source
+     * @param index
+     * @return int
+     */
+    public int getLineNum(int index) {
+        return this.lines.lineNum(this.getOffset(index));
+    }
+
+
+    public int getColumnNum(int index) {
+        return this.lines.columnNum(this.getOffset(index));
+    }
+
+
+    /** Get the token value as a string, "" for the
+     * token classes without a value
+     * @param index
+     * @return String
+     * @throws IllegalStateException when the source no longer has the value
+     */
+    public String getValue(int index) {
+        int length = this.getLength(index);
+        if (length == 0) {
+            return "";
+        }
+
+        int start = this.getStart(index);
+        if (this.text != null) {
+            return this.text.subSequence(start, start + length).toString();
+        }
+
+        return this.source.substring(start, start + length);
+    }
+
+
+    /** Get the value of an INTEGER token, parsed from its text
+     * @param index
+     * @return long
+     * @throws ArithmeticException when the literal does not fit in a long
+     * @throws IllegalStateException for the other token classes
+     */
+    public long getLong(int index) {
+        TokenClass tokenClass = this.getTokenClass(index);
+        if (tokenClass != TokenClass.INTEGER) {
+            throw new IllegalStateException(tokenClass + " token has no long value");
+        }
+
+        String value = this.getValue(index);
+        return NumberLiteral.toLong(NumberLiteral.parse(tokenClass, value, 0, value.length()));
+    }
+
+
+    /** Get the value of an INTEGER or DOUBLE token, parsed from its text
+     * @param index
+     * @return double
+     * @throws IllegalStateException for the other token classes
+     */
+    public double getDouble(int index) {
+        TokenClass tokenClass = this.getTokenClass(index);
+        if (tokenClass != TokenClass.INTEGER && tokenClass != TokenClass.DOUBLE) {
+            throw new IllegalStateException(tokenClass + " token has no number value");
+        }
+
+        String value = this.getValue(index);
+        return NumberLiteral.toDouble(tokenClass, NumberLiteral.parse(tokenClass, value, 0, value.length()),
+            value, 0, value.length());
+    }
+}
@@ -0,0 +1,665 @@
+package com.lexer;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Compact sequence of tokens stored as parallel primitive arrays.
+ * token values are ranges of a shared text, strings and token
+ * objects are only created when they are asked for. the tokens of an
+ * edited source can be runs of the arrays of other streams, moved to
+ * their new positions when they are read
+ */
+public final class TokenStream {
+    private static final TokenClass[] TOKEN_CLASSES = TokenClass.values();
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final CharSequence text;
+    private final StringBuilder pool;
+    private final LineIndex lines;
+    private byte[] tokenClasses = new byte[INITIAL_CAPACITY];
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private int[] offsets = new int[INITIAL_CAPACITY];
+    private int[] ends = new int[INITIAL_CAPACITY];
+    private long[] numbers = new long[INITIAL_CAPACITY];    // values of number literals, symbol IDs plus one
+    private int size = 0;
+
+    // runs of tokens shared with other streams, null when the tokens are in the arrays above
+    private TokenStream[] runTokens;
+    private int[] runFirsts;    // index of the first token of each run, the size at the end
+    private int[] runFroms;     // index of that token in the stream of the run
+    private int[] runDeltas;    // added to the positions of the run
+    private int runCount = 0;
+    private int lastRun = 0;    // run of the last lookup, tokens are mostly read in order
+
+
+    /** TokenStream construct for tokens of a source code string
+     * @param sourceCode
+     */
+    TokenStream(String sourceCode) {
+        this(sourceCode, LineIndex.of(new StringSource(sourceCode)));
+    }
+
+
+    /** TokenStream construct
+     * @param text source code the value ranges point into, values
+     * are copied to a private pool when it is null
+     * @param lines line index of the source
+     */
+    TokenStream(CharSequence text, LineIndex lines) {
+        this.lines = lines;
+
+        if (text == null) {
+            this.pool = new StringBuilder();
+            this.text = this.pool;
+        } else {
+            this.pool = null;
+            this.text = text;
+        }
+    }
+
+
+    /** TokenStream construct over tokens stored before
+     * @param text
+     * @param lines
+     * @param tokenClasses token class ordinals
+     * @param starts
+     * @param lengths
+     * @param offsets
+     * @param ends
+     * @param numbers
+     */
+    TokenStream(CharSequence text, LineIndex lines, byte[] tokenClasses, int[] starts, int[] lengths, int[] offsets,
+        int[] ends, long[] numbers) {
+        this(text, lines);
+
+        this.tokenClasses = tokenClasses;
+        this.starts = starts;
+        this.lengths = lengths;
+        this.offsets = offsets;
+        this.ends = ends;
+        this.numbers = numbers;
+        this.size = tokenClasses.length;
+    }
+
+
+    /** Append a token, the value is the range between valueStart
+     * and valueEnd of the source for the token classes that carry a value
+     * @param tokenClass
+     * @param source
+     * @param valueStart
+     * @param valueEnd
+     * @param offset position of the first char of the token
+     * @param end position of the last char of the token
+     * @param number value of a number literal, see NumberLiteral
+     */
+    void add(TokenClass tokenClass, Source source, int valueStart, int valueEnd, int offset, int end, long number) {
+        if (this.size == this.tokenClasses.length) {
+            this.grow();
+        }
+
+        int start = 0;
+        int length = 0;
+
+        if (Lexer.hasValue(tokenClass)) {
+            if (this.pool == null) {
+                start = valueStart;
+                length = valueEnd - valueStart;
+            } else {
+                // decoded values can be shorter than their range of the source
+                start = this.pool.length();
+                source.appendTo(this.pool, valueStart, valueEnd);
+                length = this.pool.length() - start;
+            }
+        }
+
+        this.tokenClasses[this.size] = (byte) tokenClass.ordinal();
+        this.starts[this.size] = start;
+        this.lengths[this.size] = length;
+        this.offsets[this.size] = offset;
+        this.ends[this.size] = end;
+        this.numbers[this.size] = number;
+        this.size++;
+    }
+
+
+    /** Append the tokens of another stream over the same text
+     * @param other
+     * @param from index of the first token to copy
+     */
+    void addAll(TokenStream other, int from) {
+        this.addAll(other, from, other.size, 0);
+    }
+
+
+    /** Append the tokens of another stream moved to other positions
+     * @param other
+     * @param from index of the first token to copy
+     * @param to index after the last token to copy
+     * @param positionOffset added to the positions
+     */
+    void addAll(TokenStream other, int from, int to, int positionOffset) {
+        if (other.runTokens != null) {
+            while (from < to) {
+                int run = other.run(from);
+                int end = Math.min(to, other.runFirsts[run + 1]);
+                int runFrom = other.runFroms[run] + from - other.runFirsts[run];
+
+                this.addAll(other.runTokens[run], runFrom, runFrom + end - from, other.runDeltas[run] + positionOffset);
+                from = end;
+            }
+
+            return;
+        }
+
+        int count = to - from;
+        while (this.size + count > this.tokenClasses.length) {
+            this.grow();
+        }
+
+        System.arraycopy(other.tokenClasses, from, this.tokenClasses, this.size, count);
+        System.arraycopy(other.starts, from, this.starts, this.size, count);
+        System.arraycopy(other.lengths, from, this.lengths, this.size, count);
+        System.arraycopy(other.offsets, from, this.offsets, this.size, count);
+        System.arraycopy(other.ends, from, this.ends, this.size, count);
+        System.arraycopy(other.numbers, from, this.numbers, this.size, count);
+
+        if (positionOffset != 0) {
+            for (int i = this.size; i < this.size + count; i++) {
+                if (this.lengths[i] > 0) {
+                    this.starts[i] += positionOffset;
+                }
+
+                this.offsets[i] += positionOffset;
+                this.ends[i] += positionOffset;
+            }
+        }
+
+        this.size += count;
+    }
+
+
+    /** Append the tokens of another stream moved to other positions
+     * without copying them, they are read from the arrays of the
+     * other stream from now on. a stream holds either its own tokens
+     * or shared ones
+     * @param other complete stream, not changed any more
+     * @param from index of the first token to share
+     * @param to index after the last token to share
+     * @param positionOffset added to the positions
+     */
+    void addShared(TokenStream other, int from, int to, int positionOffset) {
+        if (other.runTokens == null) {
+            if (from < to) {
+                this.addRun(other, from, to, positionOffset);
+            }
+
+            return;
+        }
+
+        while (from < to) {
+            int run = other.run(from);
+            int end = Math.min(to, other.runFirsts[run + 1]);
+            int runFrom = other.runFroms[run] + from - other.runFirsts[run];
+
+            this.addRun(other.runTokens[run], runFrom, runFrom + end - from, other.runDeltas[run] + positionOffset);
+            from = end;
+        }
+    }
+
+
+    private void addRun(TokenStream tokens, int from, int to, int delta) {
+        if (this.runTokens == null) {
+            if (this.size > 0) {
+                throw new IllegalStateException("token stream holds tokens of its own");
+            }
+
+            this.runTokens = new TokenStream[4];
+            this.runFirsts = new int[5];
+            this.runFroms = new int[4];
+            this.runDeltas = new int[4];
+        }
+
+        int last = this.runCount - 1;
+        if (last >= 0 && this.runTokens[last] == tokens && this.runDeltas[last] == delta &&
+            this.runFroms[last] + this.size - this.runFirsts[last] == from) {
+            // continues the last run
+            this.size += to - from;
+            this.runFirsts[this.runCount] = this.size;
+            return;
+        }
+
+        if (this.runCount == this.runTokens.length) {
+            this.runTokens = Arrays.copyOf(this.runTokens, this.runCount * 2);
+            this.runFirsts = Arrays.copyOf(this.runFirsts, this.runCount * 2 + 1);
+            this.runFroms = Arrays.copyOf(this.runFroms, this.runCount * 2);
+            this.runDeltas = Arrays.copyOf(this.runDeltas, this.runCount * 2);
+        }
+
+        this.runTokens[this.runCount] = tokens;
+        this.runFirsts[this.runCount] = this.size;
+        this.runFroms[this.runCount] = from;
+        this.runDeltas[this.runCount] = delta;
+        this.runCount++;
+        this.size += to - from;
+        this.runFirsts[this.runCount] = this.size;
+    }
+
+
+    /** Find the run of a token
+     * @param index
+     * @return int
+     */
+    private int run(int index) {
+        int run = this.lastRun;
+
+        if (index < this.runFirsts[run] || index >= this.runFirsts[run + 1]) {
+            int low = 0;
+            int high = this.runCount - 1;
+
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+
+                if (this.runFirsts[middle] <= index) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+
+            run = low;
+            this.lastRun = run;
+        }
+
+        return run;
+    }
+
+
+    /** Get the index of the first token of the run of a token,
+     * the tokens of a stream of its own are one run
+     * @param index
+     * @return int
+     */
+    int runStart(int index) {
+        return this.runTokens == null ? 0 : this.runFirsts[this.run(index)];
+    }
+
+
+    /** Get the index after the last token of the run of a token
+     * @param index
+     * @return int
+     */
+    int runEnd(int index) {
+        return this.runTokens == null ? this.size : this.runFirsts[this.run(index) + 1];
+    }
+
+
+    private byte tokenClass(int index) {
+        if (this.runTokens == null) {
+            return this.tokenClasses[index];
+        }
+
+        int run = this.run(index);
+        return this.runTokens[run].tokenClasses[this.runFroms[run] + index - this.runFirsts[run]];
+    }
+
+
+    private int start(int index) {
+        if (this.runTokens == null) {
+            return this.starts[index];
+        }
+
+        int run = this.run(index);
+        TokenStream tokens = this.runTokens[run];
+        int runIndex = this.runFroms[run] + index - this.runFirsts[run];
+
+        // tokens without a value have no position to move
+        return tokens.lengths[runIndex] > 0 ? tokens.starts[runIndex] + this.runDeltas[run] : tokens.starts[runIndex];
+    }
+
+
+    private int length(int index) {
+        if (this.runTokens == null) {
+            return this.lengths[index];
+        }
+
+        int run = this.run(index);
+        return this.runTokens[run].lengths[this.runFroms[run] + index - this.runFirsts[run]];
+    }
+
+
+    private int offset(int index) {
+        if (this.runTokens == null) {
+            return this.offsets[index];
+        }
+
+        int run = this.run(index);
+        return this.runTokens[run].offsets[this.runFroms[run] + index - this.runFirsts[run]] + this.runDeltas[run];
+    }
+
+
+    private int end(int index) {
+        if (this.runTokens == null) {
+            return this.ends[index];
+        }
+
+        int run = this.run(index);
+        return this.runTokens[run].ends[this.runFroms[run] + index - this.runFirsts[run]] + this.runDeltas[run];
+    }
+
+
+    private long number(int index) {
+        if (this.runTokens == null) {
+            return this.numbers[index];
+        }
+
+        int run = this.run(index);
+        return this.runTokens[run].numbers[this.runFroms[run] + index - this.runFirsts[run]];
+    }
+
+
+    private void grow() {
+        int capacity = Math.max(this.tokenClasses.length * 2, INITIAL_CAPACITY);
+
+        this.tokenClasses = Arrays.copyOf(this.tokenClasses, capacity);
+        this.starts = Arrays.copyOf(this.starts, capacity);
+        this.lengths = Arrays.copyOf(this.lengths, capacity);
+        this.offsets = Arrays.copyOf(this.offsets, capacity);
+        this.ends = Arrays.copyOf(this.ends, capacity);
+        this.numbers = Arrays.copyOf(this.numbers, capacity);
+    }
+
+
+    public int size() {
+        return this.size;
+    }
+
+
+    public TokenClass getTokenClass(int index) {
+        this.checkIndex(index);
+        return TOKEN_CLASSES[this.tokenClass(index)];
+    }
+
+
+    /** Get the start of the token value in getText()
+     * @param index
+     * @return int
+     */
+    public int getStart(int index) {
+        this.checkIndex(index);
+        return this.start(index);
+    }
+
+
+    public int getLength(int index) {
+        this.checkIndex(index);
+        return this.length(index);
+    }
+
+
+    /** Get the position of the first char of the token in the source
+     * @param index
+     * @return int
+     */
+    public int getOffset(int index) {
+        this.checkIndex(index);
+        return this.offset(index);
+    }
+
+
+    /** Get the line of the first char of the token,
+     * looked up in the line index of the source
+     * @param index
+     * @return int
+     */
+    public int getLineNum(int index) {
+        this.checkIndex(index);
+        return this.lines.lineNum(this.offset(index));
+    }
+
+
+    public int getColumnNum(int index) {
+        this.checkIndex(index);
+        return this.lines.columnNum(this.offset(index));
+    }
+
+
+    /** Get the position of the last char of the token in the source,
+     * for END_OF_INPUT the position where lexing stopped
+     * @param index
+     * @return int
+     */
+    public int getEnd(int index) {
+        this.checkIndex(index);
+        return this.end(index);
+    }
+
+
+    /** Get the value of an INTEGER token without parsing its text
+     * @param index
+     * @return long
+     * @throws ArithmeticException when the literal does not fit in a long
+     * @throws IllegalStateException for the other token classes
+     */
+    public long getLong(int index) {
+        if (this.getTokenClass(index) != TokenClass.INTEGER) {
+            throw new IllegalStateException(this.getTokenClass(index) + " token has no long value");
+        }
+
+        return NumberLiteral.toLong(this.number(index));
+    }
+
+
+    /** Get the value of an INTEGER or DOUBLE token without parsing its text
+     * @param index
+     * @return double
+     * @throws IllegalStateException for the other token classes
+     */
+    public double getDouble(int index) {
+        TokenClass tokenClass = this.getTokenClass(index);
+        if (tokenClass != TokenClass.INTEGER && tokenClass != TokenClass.DOUBLE) {
+            throw new IllegalStateException(tokenClass + " token has no number value");
+        }
+
+        int start = this.start(index);
+        return NumberLiteral.toDouble(tokenClass, this.number(index), this.text, start, start + this.length(index));
+    }
+
+
+    /** Get the symbol ID of an IDENTIFIER token lexed with a symbol table
+     * @param index
+     * @return int or -1 when the identifier was not interned
+     */
+    public int getSymbol(int index) {
+        if (this.getTokenClass(index) != TokenClass.IDENTIFIER) {
+            return -1;
+        }
+
+        return (int) this.number(index) - 1;
+    }
+
+
+    /** Get the value of a number literal as the lexer found it
+     * @param index
+     * @return long see NumberLiteral
+     */
+    long getNumber(int index) {
+        this.checkIndex(index);
+        return this.number(index);
+    }
+
+
+    /** Check whether values point into the source code itself
+     * rather than a private copy
+     * @return boolean
+     */
+    boolean isSourceText() {
+        return this.pool == null;
+    }
+
+
+    LineIndex getLines() {
+        return this.lines;
+    }
+
+
+    /** Get the text token values point into
+     * @return CharSequence
+     */
+    public CharSequence getText() {
+        return this.text;
+    }
+
+
+    /** Get the token value as a string, "" for the
+     * token classes without a value
+     * @param index
+     * @return String
+     */
+    public String getValue(int index) {
+        this.checkIndex(index);
+
+        int length = this.length(index);
+        if (length == 0) {
+            return "";
+        }
+
+        int start = this.start(index);
+        return this.text.subSequence(start, start + length).toString();
+    }
+
+
+    /** Create the token object for one token, its value
+     * is a slice of getText()
+     * @param index
+     * @return Token
+     */
+    public Token get(int index) {
+        TokenClass tokenClass = this.getTokenClass(index);
+        Token token = new Token(tokenClass, this.text, this.start(index), this.length(index), 
+            this.lines, this.offset(index));
+
+        if (tokenClass == TokenClass.INTEGER || tokenClass == TokenClass.DOUBLE) {
+            token.setNumber(this.number(index));
+        } else if (tokenClass == TokenClass.IDENTIFIER) {
+            token.setSymbol((int) this.number(index) - 1, null);
+        }
+
+        return token;
+    }
+
+
+    /** View of the stream as a list, token objects
+     * are created on demand
+     * @return List<Token>
+     */
+    public List<Token> asList() {
+        return new AbstractList<Token>() {
+            @Override
+            public Token get(int index) {
+                return TokenStream.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return TokenStream.this.size;
+            }
+        };
+    }
+
+
+    /** Cursor over the tokens, positioned before the first token
+     * @return Cursor
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("token index " + index + ", size " + this.size);
+        }
+    }
+
+
+    /** Forward cursor reading the current token straight from the arrays
+     */
+    public final class Cursor {
+        private int index = -1;
+
+
+        private Cursor() {
+        }
+
+
+        /** Move to the next token
+         * @return boolean false when there are no more tokens
+         */
+        public boolean next() {
+            if (this.index + 1 >= TokenStream.this.size) {
+                this.index = TokenStream.this.size;
+                return false;
+            }
+
+            this.index++;
+            return true;
+        }
+
+
+        public int index() {
+            return this.index;
+        }
+
+
+        public TokenClass getTokenClass() {
+            return TokenStream.this.getTokenClass(this.index);
+        }
+
+
+        public int getStart() {
+            return TokenStream.this.getStart(this.index);
+        }
+
+
+        public int getLength() {
+            return TokenStream.this.getLength(this.index);
+        }
+
+
+        public int getOffset() {
+            return TokenStream.this.getOffset(this.index);
+        }
+
+
+        public int getLineNum() {
+            return TokenStream.this.getLineNum(this.index);
+        }
+
+
+        public int getColumnNum() {
+            return TokenStream.this.getColumnNum(this.index);
+        }
+
+
+        public String getValue() {
+            return TokenStream.this.getValue(this.index);
+        }
+
+
+        public long getLong() {
+            return TokenStream.this.getLong(this.index);
+        }
+
+
+        public double getDouble() {
+            return TokenStream.this.getDouble(this.index);
+        }
+
+
+        public int getSymbol() {
+            return TokenStream.this.getSymbol(this.index);
+        }
+    }
+}
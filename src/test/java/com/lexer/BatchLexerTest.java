@@ -0,0 +1,111 @@
+package com.lexer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BatchLexerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Path write(Path directory, String name, String sourceCode) throws Exception {
+        Path path = directory.resolve(name);
+        Files.write(path, sourceCode.getBytes("UTF-8"));
+        return path.toAbsolutePath().normalize();
+    }
+
+    @Test
+    public void includeGraphTest() throws Exception {
+        Path directory = this.folder.getRoot().toPath();
+        Path library = Files.createDirectory(directory.resolve("lib"));
+
+        Path main = write(directory, "main.pll", "include io;\ninclude a;\ninclude b;\nfunction main() : int { return 1; }\n");
+        Path a = write(directory, "a.pll", "include c; int a = 1;\n");
+        Path b = write(directory, "b.pll", "include c;\ninclude c;\nint b = 2;\n");
+        Path c = write(library, "c.pll", "include a;\nint c = 3;\n");
+
+        BatchLexer.Result result = new BatchLexer(Arrays.asList(library, directory)).lex(Arrays.asList(main, a));
+
+        assertEquals(4, result.getTokens().size());
+        assertEquals(Arrays.asList(a, b), result.getIncludes().get(main));
+        assertEquals(Arrays.asList(c), result.getIncludes().get(a));
+        assertEquals(Arrays.asList(c), result.getIncludes().get(b));
+        assertEquals(Arrays.asList(a), result.getIncludes().get(c));
+        assertEquals(Arrays.asList("io"), result.getUnresolved().get(main));
+        assertTrue(result.getFailures().isEmpty());
+
+        assertEquals(1, result.getCycles().size());
+        List<Path> cycle = result.getCycles().get(0);
+        assertEquals(2, cycle.size());
+        assertTrue(cycle.contains(a) && cycle.contains(c));
+
+        TokenStream tokens = result.getTokens().get(b);
+        assertEquals(TokenClass.KEYWORD_INT, tokens.getTokenClass(6));
+        assertEquals("b", tokens.getValue(7));
+    }
+
+    @Test
+    public void scanIncludesTest() throws Exception {
+        Path directory = this.folder.getRoot().toPath();
+
+        Path main = write(directory, "main.pll", "// main\ninclude io;\ninclude a;\nfunction main() : int { return 1; }\n");
+        Path a = write(directory, "a.pll", "include b; \"unterminated\n");
+        Path b = write(directory, "b.pll", "int b = 2;\ninclude main;\n");
+
+        BatchLexer.Result result = new BatchLexer(Collections.<Path>emptyList()).scanIncludes(Arrays.asList(main));
+
+        assertTrue(result.getTokens().isEmpty());
+        assertEquals(Arrays.asList(a), result.getIncludes().get(main));
+        assertEquals(Arrays.asList(b), result.getIncludes().get(a));
+        assertEquals(Collections.<Path>emptyList(), result.getIncludes().get(b));
+        assertEquals(Arrays.asList("io"), result.getUnresolved().get(main));
+        assertTrue(result.getCycles().isEmpty());
+    }
+
+    @Test
+    public void longChainTest() throws Exception {
+        Path directory = this.folder.getRoot().toPath();
+        int length = 5000;
+
+        Path first = null;
+        for (int i = 0; i < length; i++) {
+            Path file = write(directory, "f" + i + ".pll", "include f" + (i + 1) % length + ";\nint x" + i + " = " + i + ";\n");
+            first = first == null ? file : first;
+        }
+
+        // far more files than frames fit on the stack, the graph is walked without recursion
+        Path root = first;
+        BatchLexer.Result[] results = new BatchLexer.Result[1];
+        Thread thread = new Thread(null, () -> {
+            results[0] = new BatchLexer(Collections.<Path>emptyList()).lex(Arrays.asList(root));
+        }, "small-stack", 1 << 18);
+        thread.start();
+        thread.join();
+
+        BatchLexer.Result result = results[0];
+        assertEquals(length, result.getTokens().size());
+        assertEquals(1, result.getCycles().size());
+        assertEquals(length, result.getCycles().get(0).size());
+        assertTrue(result.getCycles().get(0).contains(root));
+    }
+
+    @Test
+    public void missingRootTest() throws Exception {
+        Path directory = this.folder.getRoot().toPath();
+        Path missing = directory.resolve("missing.pll").toAbsolutePath().normalize();
+
+        BatchLexer.Result result = new BatchLexer(Collections.<Path>emptyList()).lex(Arrays.asList(missing));
+
+        assertTrue(result.getTokens().isEmpty());
+        assertTrue(result.getFailures().containsKey(missing));
+    }
+}
@@ -0,0 +1,138 @@
+package com.lexer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class IncrementalLexerTest {
+    private static final String[] FRAGMENTS = new String[] {
+        "include", "io", ";", "int", "x", "var_1", "42", "-7", "3.14", "5.", "\"text\"", "\"", "// comment", "\n", "\r\n",
+        "+", "-", "=", "==", "+=", "(", ")", "{", "}", ",", " ", "  ", "\t", "/", "*", "#"
+    };
+
+    private static void assertSameTokens(String message, TokenStream expected, TokenStream tokens) {
+        assertEquals(message, expected.size(), tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            assertEquals(message, expected.getTokenClass(i), tokens.getTokenClass(i));
+            assertEquals(message, expected.getValue(i), tokens.getValue(i));
+            assertEquals(message, expected.getLineNum(i), tokens.getLineNum(i));
+            assertEquals(message, expected.getColumnNum(i), tokens.getColumnNum(i));
+            assertEquals(message, expected.getEnd(i), tokens.getEnd(i));
+        }
+    }
+
+    private static String randomText(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            text.append(' ');
+        }
+        return text.toString();
+    }
+
+    @Test
+    public void singleEditTest() {
+        String sourceCode = "int x = 1;\nint y = 2;\nint z = 3;\n";
+        TokenStream tokens = new Lexer(sourceCode).tokenizeCompact();
+
+        TokenStream edited = IncrementalLexer.relex(tokens, 15, 1, "yy");
+        assertEquals("int x = 1;\nint yy = 2;\nint z = 3;\n", edited.getText().toString());
+        assertEquals("yy", edited.getValue(6));
+        assertSameTokens("", new Lexer(edited.getText().toString()).tokenizeCompact(), edited);
+    }
+
+    @Test
+    public void randomEditsTest() {
+        Random random = new Random(42);
+
+        for (int n = 0; n < 100; n++) {
+            String sourceCode = randomText(random, 30) + ";";
+            TokenStream tokens = new Lexer(sourceCode).tokenizeCompact();
+
+            for (int edit = 0; edit < 20; edit++) {
+                int offset = random.nextInt(sourceCode.length() - 1);
+                int removedLength = random.nextInt(Math.min(8, sourceCode.length() - 1 - offset) + 1);
+                String insertedText = random.nextBoolean() ? randomText(random, random.nextInt(3)) : "";
+
+                String message = sourceCode + " / " + offset + " " + removedLength + " [" + insertedText + "]";
+                tokens = IncrementalLexer.relex(tokens, offset, removedLength, insertedText);
+                sourceCode = sourceCode.substring(0, offset) + insertedText + sourceCode.substring(offset + removedLength);
+
+                assertEquals(message, sourceCode, tokens.getText().toString());
+                assertSameTokens(message, new Lexer(sourceCode).tokenizeCompact(), tokens);
+            }
+        }
+    }
+
+    @Test
+    public void sharedEditsTest() {
+        Random random = new Random(7);
+        // long enough for text and tokens far from an edit to be shared
+        String sourceCode = randomText(random, 5000) + ";";
+        TokenStream tokens = new Lexer(sourceCode).tokenizeCompact();
+
+        for (int edit = 0; edit < 200; edit++) {
+            int offset = random.nextInt(sourceCode.length() - 1);
+            int removedLength = random.nextInt(Math.min(8, sourceCode.length() - 1 - offset) + 1);
+            String insertedText = random.nextBoolean() ? randomText(random, random.nextInt(3)) : "\r";
+
+            String message = edit + ": " + offset + " " + removedLength + " [" + insertedText + "]";
+            tokens = IncrementalLexer.relex(tokens, offset, removedLength, insertedText);
+            sourceCode = sourceCode.substring(0, offset) + insertedText + sourceCode.substring(offset + removedLength);
+
+            TokenStream expected = new Lexer(sourceCode).tokenizeCompact();
+            assertEquals(message, sourceCode, tokens.getText().toString());
+            assertArrayEquals(message, expected.getLines().lineStarts(), tokens.getLines().lineStarts());
+            assertSameTokens(message, expected, tokens);
+        }
+    }
+
+    @Test
+    public void editCostTest() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return;     // allocations can not be measured on this JVM
+        }
+
+        // the same edits in a file and in one a hundred times larger
+        long small = IncrementalLexerTest.editAllocations((com.sun.management.ThreadMXBean) threads, 2000);
+        small = IncrementalLexerTest.editAllocations((com.sun.management.ThreadMXBean) threads, 2000);
+        long large = IncrementalLexerTest.editAllocations((com.sun.management.ThreadMXBean) threads, 200000);
+
+        assertTrue(small + " / " + large, large < small * 2);
+    }
+
+    private static long editAllocations(com.sun.management.ThreadMXBean allocations, int lineCount) {
+        StringBuilder sourceCode = new StringBuilder();
+        for (int i = 0; i < lineCount; i++) {
+            sourceCode.append("int x").append(i).append(" = ").append(i).append(" + f(\"").append(i).append("\");\n");
+        }
+
+        TokenStream tokens = new Lexer(sourceCode.toString()).tokenizeCompact();
+        tokens.getLineNum(0);   // the line index of the file is built once
+        long thread = Thread.currentThread().getId();
+        long start = allocations.getThreadAllocatedBytes(thread);
+
+        // typing a line near the start, then at another place
+        int offset = sourceCode.indexOf("\n", 1000) + 1;
+        String line = "int typed = 1234;\n";
+        for (int i = 0; i < line.length(); i++) {
+            tokens = IncrementalLexer.relex(tokens, offset + i, 0, line.substring(i, i + 1));
+        }
+        offset = sourceCode.indexOf("\n", 20000) + 1;
+        for (int i = 0; i < line.length(); i++) {
+            tokens = IncrementalLexer.relex(tokens, offset + i, 0, line.substring(i, i + 1));
+        }
+
+        int last = tokens.size() - 2;
+        assertEquals(lineCount + 2, tokens.getLineNum(last));
+        assertEquals(sourceCode.length() + 2 * line.length() - 2, tokens.getOffset(last));
+
+        return allocations.getThreadAllocatedBytes(thread) - start;
+    }
+}
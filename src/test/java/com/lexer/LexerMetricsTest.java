@@ -0,0 +1,86 @@
+package com.lexer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class LexerMetricsTest {
+
+    private static String sourceCode() {
+        StringBuilder comment = new StringBuilder("// ");
+        for (int i = 0; i < 10000; i++) {
+            comment.append('c');
+        }
+
+        return "int a = 12;\n" + comment + "\nstr s = \"hello\";\ndouble d = 2.5;\n";
+    }
+
+    @Test
+    public void snapshotTest() {
+        String sourceCode = sourceCode();
+        LexerMetrics metrics = new LexerMetrics();
+
+        for (Lexer.Engine engine : Lexer.Engine.values()) {
+            Lexer lexer = new Lexer(sourceCode);
+            lexer.setEngine(engine);
+            lexer.setMetrics(metrics);
+            lexer.tokenizeCompact();
+        }
+
+        LexerMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.getRuns());
+        assertEquals(2 * sourceCode.length(), snapshot.getScanned());
+        assertEquals(2 * 16, snapshot.getTokens());
+        assertEquals(2, snapshot.getTokens(TokenClass.INTEGER));
+        assertEquals(2, snapshot.getTokens(TokenClass.DOUBLE));
+        assertEquals(6, snapshot.getTokens(TokenClass.SEMICOLON));
+        assertEquals(2, snapshot.getTokens(TokenClass.END_OF_INPUT));
+        assertEquals(0, snapshot.getTokens(TokenClass.OP_ADD));
+        assertEquals(7, snapshot.getLongestToken());
+        assertTrue(snapshot.getCommentNanos() > 0);
+        assertTrue(snapshot.getStringNanos() > 0);
+    }
+
+    @Test
+    public void lexerWithoutEndTest() {
+        LexerMetrics metrics = new LexerMetrics();
+        Lexer lexer = new Lexer("int a = 1;");
+        lexer.setMetrics(metrics);
+        lexer.iterator().next();
+
+        assertEquals(0, metrics.snapshot().getRuns());
+        assertEquals(0, metrics.snapshot().getTokens());
+    }
+
+    @Test
+    public void flightRecorderEventTest() throws Exception {
+        String sourceCode = sourceCode();
+        Path file = Files.createTempFile("lexer", ".jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable("com.lexer.Lex");
+            recording.start();
+
+            Lexer lexer = new Lexer(sourceCode);
+            lexer.setMetrics(new LexerMetrics());
+            lexer.tokenize();
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        assertEquals(1, events.size());
+        assertEquals(sourceCode.length(), events.get(0).getLong("scanned"));
+        assertEquals(16, events.get(0).getLong("tokens"));
+        assertEquals(7, events.get(0).getInt("longestToken"));
+    }
+}
@@ -1,8 +1,33 @@
 package com.lexer;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.sun.management.ThreadMXBean;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import org.junit.Test;
 
 public class LexerTest {
@@ -287,4 +312,590 @@ public class LexerTest {
             i++;
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void streamedLexingTest() {
+        String sourceCode = 
+            "include io;\n"
+            + "// a comment that is longer than the whole buffer of the streaming lexer\n"
+            + "function a_very_long_function_name_1234(a : int) : double {\n"
+            + "    print(\"a string literal that straddles many buffer refills\");\n"
+            + "    return 12345678.90123 + a;\n"
+            + "}\n";
+
+        ArrayList<Token> expected = new Lexer(sourceCode).tokenize();
+
+        for (int bufferSize = 1; bufferSize <= 16; bufferSize++) {
+            Lexer lexer = new Lexer(new StringReader(sourceCode), bufferSize);
+            ArrayList<Token> tokens = lexer.tokenize();
+
+            assertEquals(expected.size(), tokens.size());
+            for (int i = 0; i < tokens.size(); i++) {
+                assertEquals(expected.get(i).getTokenClass(), tokens.get(i).getTokenClass());
+                assertEquals(expected.get(i).getValue(), tokens.get(i).getValue());
+                assertEquals(expected.get(i).getLineNum(), tokens.get(i).getLineNum());
+                assertEquals(expected.get(i).getColumnNum(), tokens.get(i).getColumnNum());
+            }
+        }
+    }
+
+    @Test
+    public void mappedFileLexingTest() throws Exception {
+        Path path = Paths.get(LexerTest.class.getResource("/resources/test.pll").toURI());
+        String sourceCode = new String(Files.readAllBytes(path), "UTF-8");
+
+        ArrayList<Token> expected = new Lexer(sourceCode).tokenize();
+        ArrayList<Token> tokens = Lexer.fromFile(path).tokenize();
+
+        assertEquals(expected.size(), tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            assertEquals(expected.get(i).getTokenClass(), tokens.get(i).getTokenClass());
+            assertEquals(expected.get(i).getValue(), tokens.get(i).getValue());
+            assertEquals(expected.get(i).getLineNum(), tokens.get(i).getLineNum());
+            assertEquals(expected.get(i).getColumnNum(), tokens.get(i).getColumnNum());
+        }
+    }
+
+    @Test
+    public void lazyIteratorStopsEarlyTest() throws Exception {
+        StringBuilder sourceCode = new StringBuilder("include io;\n");
+        for (int i = 0; i < 10000; i++) {
+            sourceCode.append("int x = 1;\n");
+        }
+
+        int[] charsRead = new int[] { 0 };
+        Reader reader = new StringReader(sourceCode.toString()) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws java.io.IOException {
+                int read = super.read(buffer, offset, length);
+                charsRead[0] += Math.max(read, 0);
+                return read;
+            }
+        };
+
+        Iterator<Token> tokens = new Lexer(reader, 64).iterator();
+        assertEquals(TokenClass.KEYWORD_INCLUDE, tokens.next().getTokenClass());
+        assertEquals(TokenClass.IDENTIFIER, tokens.next().getTokenClass());
+        assertEquals(TokenClass.SEMICOLON, tokens.next().getTokenClass());
+        assertTrue(tokens.hasNext());
+        assertTrue(charsRead[0] < sourceCode.length());
+    }
+
+    @Test
+    public void streamLexingTest() {
+        String sourceCode = "include io; \nint x = 141.5; \n\n str s = \"XYZ\";";
+        ArrayList<Token> expected = new Lexer(sourceCode).tokenize();
+        List<Token> tokens = new Lexer(sourceCode).stream().collect(Collectors.toList());
+
+        assertEquals(expected.size(), tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            assertEquals(expected.get(i).getTokenClass(), tokens.get(i).getTokenClass());
+            assertEquals(expected.get(i).getValue(), tokens.get(i).getValue());
+        }
+
+        Iterator<Token> iterator = new Lexer("").iterator();
+        assertEquals(TokenClass.END_OF_INPUT, iterator.next().getTokenClass());
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void tableDrivenEngineTest() throws Exception {
+        String[] fragments = new String[] {
+            "include", "io", ";", "function", "return", "if", "else", "while", "int", "str", "bool", "double",
+            "true", "false", "includes", "iff", "x", "var_1", "a1b", "_", "0", "42", "-7", "3.14", "5.", "-0.5",
+            "\"text\"", "\"a b\"", "// comment\n", "+", "-", "*", "/", "%", "!", "<", ">", "=", "&", "|", "^",
+            "++", "--", "+=", "-=", "*=", "/=", "%=", "<=", ">=", "==", "!=", "&&", "||",
+            "(", ")", "[", "]", "{", "}", ":", ",", " ", "\t", "\n", "\r\n", "\u00a0"
+        };
+
+        Path path = Paths.get(LexerTest.class.getResource("/resources/test.pll").toURI());
+        ArrayList<String> sources = new ArrayList<String>();
+        sources.add(new String(Files.readAllBytes(path), "UTF-8"));
+        sources.add("a = b # c");
+
+        Random random = new Random(1693);
+        for (int i = 0; i < 500; i++) {
+            StringBuilder sourceCode = new StringBuilder();
+            int count = random.nextInt(40);
+            for (int j = 0; j < count; j++) {
+                sourceCode.append(fragments[random.nextInt(fragments.length)]);
+                if (random.nextBoolean()) {
+                    sourceCode.append(' ');
+                }
+            }
+            sourceCode.append(" ;");
+            sources.add(sourceCode.toString());
+        }
+
+        for (String sourceCode : sources) {
+            ArrayList<Token> expected = new Lexer(sourceCode).tokenize();
+
+            Lexer lexer = new Lexer(sourceCode);
+            lexer.setEngine(Lexer.Engine.TABLE_DRIVEN);
+            ArrayList<Token> tokens = lexer.tokenize();
+
+            assertEquals(sourceCode, expected.size(), tokens.size());
+            for (int i = 0; i < tokens.size(); i++) {
+                assertEquals(sourceCode, expected.get(i).getTokenClass(), tokens.get(i).getTokenClass());
+                assertEquals(sourceCode, expected.get(i).getValue(), tokens.get(i).getValue());
+                assertEquals(sourceCode, expected.get(i).getLineNum(), tokens.get(i).getLineNum());
+                assertEquals(sourceCode, expected.get(i).getColumnNum(), tokens.get(i).getColumnNum());
+            }
+        }
+    }
+
+    @Test
+    public void lexemeValueTest() {
+        String sourceCode = "int count_1 = 42; str s = \"abc\";";
+        ArrayList<Token> tokens = new Lexer(sourceCode).tokenize();
+
+        assertEquals("int", tokens.get(0).getValue());
+        assertEquals("count_1", tokens.get(1).getValue());
+        assertEquals("", tokens.get(2).getValue());
+        assertEquals("42", tokens.get(3).getValue());
+        assertEquals("abc", tokens.get(8).getValue());
+
+        CharSequence lexeme = new Lexer(sourceCode).tokenize().get(1).getLexeme();
+        assertFalse(lexeme instanceof String);
+        assertEquals(7, lexeme.length());
+        assertEquals('c', lexeme.charAt(0));
+        assertEquals("unt", lexeme.subSequence(2, 5).toString());
+        assertEquals("count_1", lexeme.toString());
+
+        ArrayList<Token> streamed = new Lexer(new StringReader(sourceCode), 2).tokenize();
+        assertEquals("count_1", streamed.get(1).getValue());
+        assertEquals("abc", streamed.get(8).getLexeme().toString());
+    }
+
+    @Test
+    public void lineIndexTest() {
+        String sourceCode = "int a;\r\nstr b;\rdouble c;\n\n  x";
+        ArrayList<Token> tokens = new Lexer(sourceCode).tokenize();
+
+        assertEquals(1, tokens.get(0).getLineNum());
+        assertEquals(1, tokens.get(0).getColumnNum());
+        assertEquals(0, tokens.get(0).getOffset());
+        assertEquals(2, tokens.get(3).getLineNum());
+        assertEquals(1, tokens.get(3).getColumnNum());
+        assertEquals(3, tokens.get(6).getLineNum());
+        assertEquals(5, tokens.get(9).getLineNum());
+        assertEquals(3, tokens.get(9).getColumnNum());
+
+        TokenStream streamed = new Lexer(new StringReader(sourceCode), 3).tokenizeCompact();
+        for (int i = 0; i < tokens.size(); i++) {
+            assertEquals(tokens.get(i).getLineNum(), streamed.getLineNum(i));
+            assertEquals(tokens.get(i).getColumnNum(), streamed.getColumnNum(i));
+        }
+    }
+
+    @Test
+    public void endOfInputTest() {
+        String[] sources = new String[] {"a -", "a /", "x +", "1", "2.", "b <", "c !", "d &"};
+
+        for (String sourceCode : sources) {
+            for (Lexer.Engine engine : Lexer.Engine.values()) {
+                Lexer lexer = new Lexer(sourceCode);
+                lexer.setEngine(engine);
+                ArrayList<Token> tokens = lexer.tokenize();
+
+                assertEquals(sourceCode, TokenClass.END_OF_INPUT, tokens.get(tokens.size() - 1).getTokenClass());
+                assertTrue(sourceCode, tokens.size() >= 2);
+            }
+        }
+    }
+
+    @Test
+    public void errorRecoveryTest() {
+        String sourceCode = "int a = 1 # 2;\nstr s = @@;\nstr t = \"open";
+
+        for (Lexer.Engine engine : Lexer.Engine.values()) {
+            Lexer plain = new Lexer(sourceCode);
+            plain.setEngine(engine);
+            assertEquals(5, plain.tokenize().size());
+            assertTrue(plain.getDiagnostics().isEmpty());
+
+            Lexer lexer = new Lexer(sourceCode);
+            lexer.setEngine(engine);
+            lexer.setErrorRecovery(true);
+            ArrayList<Token> tokens = lexer.tokenize();
+
+            assertEquals(17, tokens.size());
+            assertEquals(TokenClass.ERROR, tokens.get(4).getTokenClass());
+            assertEquals("#", tokens.get(4).getValue());
+            assertEquals(TokenClass.INTEGER, tokens.get(5).getTokenClass());
+            assertEquals(TokenClass.ERROR, tokens.get(10).getTokenClass());
+            assertEquals("@@", tokens.get(10).getValue());
+            assertEquals(TokenClass.ERROR, tokens.get(15).getTokenClass());
+            assertEquals("\"open", tokens.get(15).getValue());
+            assertEquals(TokenClass.END_OF_INPUT, tokens.get(16).getTokenClass());
+
+            List<Diagnostic> diagnostics = lexer.getDiagnostics();
+            assertEquals(3, diagnostics.size());
+            assertEquals("1:11: illegal character U+0023", diagnostics.get(0).toString());
+            assertEquals("illegal characters U+0040 U+0040", diagnostics.get(1).getMessage());
+            assertEquals(2, diagnostics.get(1).getLineNum());
+            assertEquals(9, diagnostics.get(1).getColumnNum());
+            assertEquals("3:9: unterminated string literal", diagnostics.get(2).toString());
+
+            // a streamed source has dropped the lines by the time they are asked for
+            Lexer streamed = new Lexer(new StringReader(sourceCode), 2);
+            streamed.setEngine(engine);
+            streamed.setErrorRecovery(true);
+            streamed.tokenize();
+            assertEquals(diagnostics.toString(), streamed.getDiagnostics().toString());
+        }
+    }
+
+    @Test
+    public void bulkSkippingTest() throws Exception {
+        String[] fragments = new String[] {
+            " ", "        ", "\t\t", "\n", "\r\n", "\r", "\u000b", "\f", "\u00a0", "                  \n",
+            "// comment\n", "//\n", "// a long comment with \"quotes\" and \u00e9 in it\r\n", "// ends at\u0000",
+            "\"text\"", "\"a string that spans more than eight bytes\"", "\"\u00e9t\u00e9\"", "\"x\ny\"",
+            "x", "42", "int", "=", ";", "/", "/="
+        };
+
+        // the bulk searches of mapped bytes agree with the char by char defaults
+        Random random = new Random(16);
+        byte[] bytes = new byte[300];
+        for (int i = 0; i < bytes.length; i++) {
+            byte[] choices = {' ', ' ', ' ', '\t', '\n', '\r', 11, 12, '"', '/', 0, 'a', (byte) 0xa0, (byte) 0xc2, (byte) 0xe9};
+            bytes[i] = choices[random.nextInt(choices.length)];
+        }
+        ByteBufferSource mapped = new ByteBufferSource(ByteBuffer.wrap(bytes));
+        Source scalar = new Source() {
+            @Override
+            char charAt(int position) {
+                return mapped.charAt(position);
+            }
+
+            @Override
+            boolean isEnd(int position) {
+                return position >= bytes.length;
+            }
+
+            @Override
+            String substring(int start, int end) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        for (int position = 0; position <= bytes.length; position++) {
+            assertEquals(scalar.skipBlanks(position), mapped.skipBlanks(position));
+            assertEquals(scalar.indexOfCommentEnd(position), mapped.indexOfCommentEnd(position));
+            assertEquals(scalar.indexOfQuote(position), mapped.indexOfQuote(position));
+        }
+
+        // and so do the searches of strings, a StringBuilder is searched char by char
+        String text = new String(bytes, StandardCharsets.ISO_8859_1);
+        StringSource string = new StringSource(text);
+        StringSource builder = new StringSource(new StringBuilder(text));
+        for (int position = 0; position <= bytes.length; position++) {
+            assertEquals(builder.skipBlanks(position), string.skipBlanks(position));
+            assertEquals(builder.indexOfCommentEnd(position), string.indexOfCommentEnd(position));
+            assertEquals(builder.indexOfQuote(position), string.indexOfQuote(position));
+        }
+
+        for (int i = 0; i < 300; i++) {
+            StringBuilder sourceCode = new StringBuilder();
+            int count = random.nextInt(60);
+            for (int j = 0; j < count; j++) {
+                sourceCode.append(fragments[random.nextInt(fragments.length)]);
+            }
+
+            for (Lexer.Engine engine : Lexer.Engine.values()) {
+                Lexer lexer = new Lexer(sourceCode.toString());
+                lexer.setEngine(engine);
+                ArrayList<Token> tokens = lexer.tokenize();
+
+                // the reader source searches char by char
+                Lexer streamed = new Lexer(new StringReader(sourceCode.toString()), 3);
+                streamed.setEngine(engine);
+                ArrayList<Token> expected = streamed.tokenize();
+
+                Lexer bytesLexer = new Lexer(new ByteBufferSource(ByteBuffer.wrap(sourceCode.toString().getBytes("UTF-8"))));
+                bytesLexer.setEngine(engine);
+                ArrayList<Token> byteTokens = bytesLexer.tokenize();
+
+                assertEquals(sourceCode.toString(), expected.size(), tokens.size());
+                assertEquals(sourceCode.toString(), expected.size(), byteTokens.size());
+                for (int j = 0; j < tokens.size(); j++) {
+                    assertEquals(expected.get(j).getTokenClass(), tokens.get(j).getTokenClass());
+                    assertEquals(expected.get(j).getValue(), tokens.get(j).getValue());
+                    assertEquals(expected.get(j).getOffset(), tokens.get(j).getOffset());
+                    assertEquals(tokens.get(j).getLineNum(), expected.get(j).getLineNum());
+                    assertEquals(tokens.get(j).getColumnNum(), expected.get(j).getColumnNum());
+                    assertEquals(expected.get(j).getTokenClass(), byteTokens.get(j).getTokenClass());
+                    assertEquals(expected.get(j).getValue(), byteTokens.get(j).getValue());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void utf8LexingTest() throws Exception {
+        String sourceCode = "str s = \"\u00e9t\u00e9\"; // caf\u00e9\u00a0\nint x\u00a0= 1;";
+        byte[] bytes = sourceCode.getBytes("UTF-8");
+
+        ArrayList<Token> expected = new Lexer(sourceCode).tokenize();
+        ArrayList<Token> tokens = Lexer.fromUtf8(bytes).tokenize();
+
+        assertEquals(expected.size(), tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            assertEquals(expected.get(i).getTokenClass(), tokens.get(i).getTokenClass());
+            assertEquals(expected.get(i).getValue(), tokens.get(i).getValue());
+        }
+
+        // offsets count bytes, "\u00e9" is two of them
+        assertEquals(8, tokens.get(3).getOffset());
+        assertEquals(15, tokens.get(4).getOffset());
+        assertEquals(8, tokens.get(7).getColumnNum());
+        assertEquals(bytes.length - 1, tokens.get(9).getOffset());
+
+        // positions start at the buffer position
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 4);
+        buffer.position(4);
+        buffer.put(bytes).position(4);
+        TokenStream stream = Lexer.fromUtf8(buffer).tokenizeCompact();
+        assertEquals(tokens.size(), stream.size());
+        assertEquals(8, stream.getOffset(3));
+        assertEquals("\u00e9t\u00e9", stream.getValue(3));
+        assertEquals(4, buffer.position());
+
+        // multi-byte chars outside strings and comments are not tokens,
+        // an A0 byte only is a blank in the non-breaking space
+        Lexer lexer = Lexer.fromUtf8("int \u00e0b = 1;".getBytes("UTF-8"));
+        lexer.setErrorRecovery(true);
+        tokens = lexer.tokenize();
+
+        assertEquals(TokenClass.ERROR, tokens.get(1).getTokenClass());
+        assertEquals("\u00e0", tokens.get(1).getValue());
+        assertEquals(TokenClass.IDENTIFIER, tokens.get(2).getTokenClass());
+        assertEquals("b", tokens.get(2).getValue());
+        assertEquals(1, lexer.getDiagnostics().size());
+    }
+
+    @Test
+    public void resetTest() {
+        String[] snippets = new String[] {"int a = 1;", "x += 2.5 // done", "print(\"hi\")", ""};
+        Lexer lexer = new Lexer("str s = \"first\";");
+        lexer.setEngine(Lexer.Engine.TABLE_DRIVEN);
+        lexer.tokenize();
+
+        for (String snippet : snippets) {
+            lexer.reset(new StringBuilder(snippet));
+            List<Token> tokens = new ArrayList<Token>();
+            int count = lexer.tokenize((tokenClass, offset, end, valueStart, valueLength) ->
+                tokens.add(new Token(tokenClass, snippet.substring(valueStart, valueStart + valueLength), 1, offset + 1)));
+
+            ArrayList<Token> expected = new Lexer(snippet).tokenize();
+            assertEquals(expected.size(), count);
+            for (int i = 0; i < count; i++) {
+                assertEquals(expected.get(i).getTokenClass(), tokens.get(i).getTokenClass());
+                assertEquals(expected.get(i).getValue(), tokens.get(i).getValue());
+                assertEquals(expected.get(i).getOffset() + 1, tokens.get(i).getColumnNum());
+            }
+        }
+
+        // lines of tokens from before a reset stay right
+        lexer.reset("a\nb\nc");
+        ArrayList<Token> before = lexer.tokenize();
+        lexer.reset("x y z");
+        lexer.tokenize();
+        assertEquals(3, before.get(2).getLineNum());
+    }
+
+    @Test
+    public void resetAllocationTest() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean)) {
+            return;     // allocations can not be measured on this JVM
+        }
+
+        ThreadMXBean allocations = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        String snippet = "function f(x) : int { if (x >= 10) { return x * 2; } // big\n return \"no\"; }";
+        int[] sum = new int[1];
+        TokenSink sink = (tokenClass, offset, end, valueStart, valueLength) -> sum[0] += tokenClass.ordinal() + valueLength;
+
+        for (Lexer.Engine engine : Lexer.Engine.values()) {
+            LexerMetrics metrics = new LexerMetrics();
+            Lexer lexer = new Lexer("");
+            lexer.setEngine(engine);
+            lexer.setMetrics(metrics);
+
+            for (int i = 0; i < 20000; i++) {
+                lexer.reset(snippet);
+                lexer.tokenize(sink);
+            }
+
+            // the cost of measuring itself
+            long start = allocations.getThreadAllocatedBytes(thread);
+            long overhead = allocations.getThreadAllocatedBytes(thread) - start;
+
+            start = allocations.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < 1000; i++) {
+                lexer.reset(snippet);
+                lexer.tokenize(sink);
+            }
+            long allocated = allocations.getThreadAllocatedBytes(thread) - start;
+
+            assertEquals(21000, metrics.snapshot().getRuns());
+            // a recompilation may allocate a little, one allocation per input would not fit
+            assertTrue(engine + " allocated " + allocated, allocated - overhead < 1024);
+        }
+
+        assertTrue(sum[0] > 0);
+    }
+
+    @Test
+    public void numberValueTest() {
+        String sourceCode = "0 42 9223372036854775807 9223372036854775808 3.14 0.1 2.5 00.50 123456789012345678.5 5.";
+
+        for (Lexer.Engine engine : Lexer.Engine.values()) {
+            Lexer lexer = new Lexer(sourceCode);
+            lexer.setEngine(engine);
+            ArrayList<Token> tokens = lexer.tokenize();
+
+            lexer = new Lexer(sourceCode);
+            lexer.setEngine(engine);
+            TokenStream stream = lexer.tokenizeCompact();
+
+            assertEquals(0, tokens.get(0).getLong());
+            assertEquals(42, stream.getLong(1));
+            assertEquals(Long.MAX_VALUE, tokens.get(2).getLong());
+            assertEquals(9223372036854775808.0, tokens.get(3).getDouble(), 0);
+            assertEquals(3.14, stream.getDouble(4), 0);
+            assertEquals(0.1, tokens.get(5).getDouble(), 0);
+            assertEquals(2.5, tokens.get(6).getDouble(), 0);
+            assertEquals(0.5, stream.get(7).getDouble(), 0);
+            assertEquals(123456789012345678.5, tokens.get(8).getDouble(), 0);
+            assertEquals(5, tokens.get(9).getLong());
+            assertEquals(42.0, tokens.get(1).getDouble(), 0);
+
+            try {
+                stream.getLong(3);
+                fail();
+            } catch (ArithmeticException e) {
+                // too large for a long
+            }
+
+            try {
+                stream.getLong(4);
+                fail();
+            } catch (IllegalStateException e) {
+                // a DOUBLE token
+            }
+        }
+
+        // the division is rounded as parsing the text
+        Random random = new Random(19);
+        for (int i = 0; i < 2000; i++) {
+            String literal = random.nextInt(100000) + "." + String.format("%0" + (1 + random.nextInt(10)) + "d", random.nextInt(1000000000));
+            Token token = new Lexer(literal).tokenize().get(0);
+            assertEquals(literal, Double.parseDouble(literal), token.getDouble(), 0);
+            assertEquals(literal, Double.parseDouble(literal), new Token(TokenClass.DOUBLE, literal, 1, 1).getDouble(), 0);
+        }
+    }
+
+    @Test
+    public void scanIncludesTest() {
+        String[] sourceCodes = new String[] {
+            "include io;\ninclude a1;\nint x;", "  // header\n\tinclude io; // io\r\n include b ;include c;", "",
+            "include", "include io", "include int;", "include io\n// later\n;include x", "includes io;",
+            "include io2x;", "include \"io\";", "int x;\ninclude io;", "include io;include io;\u0000include b;",
+            "include io;\n   // c\n   int x = 1;"
+        };
+
+        for (String sourceCode : sourceCodes) {
+            List<Token> all = new Lexer(sourceCode).tokenize();
+            List<String> expected = BatchLexer.includeNames(new Lexer(sourceCode).tokenizeCompact());
+
+            // the reader source drops the chars it has passed
+            Lexer[] lexers = new Lexer[] {
+                new Lexer(sourceCode), Lexer.fromUtf8(sourceCode.getBytes()), new Lexer(new StringReader(sourceCode), 2),
+                new Lexer(new StringReader(sourceCode), 4)
+            };
+
+            for (Lexer lexer : lexers) {
+                assertEquals(sourceCode, expected, lexer.scanIncludes());
+
+                // the remaining tokens are the ones after the directives
+                List<Token> rest = lexer.tokenize();
+                assertEquals(sourceCode, all.size() - expected.size() * 3, rest.size());
+                for (int i = 0; i < rest.size(); i++) {
+                    Token token = all.get(expected.size() * 3 + i);
+                    assertEquals(sourceCode, token.getTokenClass(), rest.get(i).getTokenClass());
+                    assertEquals(sourceCode, token.getValue(), rest.get(i).getValue());
+                    assertEquals(sourceCode, token.getOffset(), rest.get(i).getOffset());
+                }
+            }
+        }
+
+        // lexing goes on after the last directive
+        Lexer lexer = new Lexer("include io; include b; int x;");
+        assertEquals(Arrays.asList("io", "b"), lexer.scanIncludes());
+        List<Token> tokens = lexer.tokenize();
+        assertEquals(TokenClass.KEYWORD_INT, tokens.get(0).getTokenClass());
+        assertEquals(23, tokens.get(0).getOffset());
+        assertEquals(4, tokens.size());
+    }
+
+    @Test
+    public void compressedTest() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            builder.append("str s").append(i).append(" = \"h\u00e9llo \u4e16\"; // line ").append(i).append('\n');
+        }
+        String sourceCode = builder.toString();
+        byte[] bytes = sourceCode.getBytes("UTF-8");
+
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        try (GZIPOutputStream output = new GZIPOutputStream(gzip)) {
+            output.write(bytes);
+        }
+
+        ByteArrayOutputStream deflate = new ByteArrayOutputStream();
+        try (DeflaterOutputStream output = new DeflaterOutputStream(deflate)) {
+            output.write(bytes);
+        }
+
+        TokenStream expected = new Lexer(sourceCode).tokenizeCompact();
+        Lexer[] lexers = new Lexer[] {
+            Lexer.fromCompressed(new ByteArrayInputStream(gzip.toByteArray()), SourceCodec.GZIP),
+            Lexer.fromCompressed(new ByteArrayInputStream(deflate.toByteArray()), InflaterInputStream::new)
+        };
+
+        for (Lexer lexer : lexers) {
+            lexer.setEngine(Lexer.Engine.TABLE_DRIVEN);
+            TokenStream tokens = lexer.tokenizeCompact();
+
+            assertEquals(expected.size(), tokens.size());
+            for (int i = 0; i < tokens.size(); i++) {
+                assertEquals(expected.getTokenClass(i), tokens.getTokenClass(i));
+                assertEquals(expected.getValue(i), tokens.getValue(i));
+                assertEquals(expected.getOffset(i), tokens.getOffset(i));
+                assertEquals(expected.getLineNum(i), tokens.getLineNum(i));
+            }
+        }
+
+        // a broken archive fails the lexer, not the decompressing thread
+        byte[] broken = Arrays.copyOf(gzip.toByteArray(), gzip.size() / 2);
+        try {
+            Lexer.fromCompressed(new ByteArrayInputStream(broken), SourceCodec.GZIP).tokenizeCompact();
+            fail();
+        } catch (UncheckedIOException e) {
+            assertTrue(e.getCause().getCause() instanceof EOFException);
+        }
+
+        // so does a codec throwing something else than an IOException
+        SourceCodec failing = input -> {
+            throw new IllegalArgumentException("not a known archive");
+        };
+        try {
+            Lexer.fromCompressed(new ByteArrayInputStream(gzip.toByteArray()), failing).tokenizeCompact();
+            fail();
+        } catch (UncheckedIOException e) {
+            assertTrue(e.getCause().getCause() instanceof IllegalArgumentException);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.lexer;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class ParallelLexerTest {
+
+    private static void assertSameTokens(String sourceCode, TokenStream expected, TokenStream tokens) {
+        assertEquals(sourceCode, expected.size(), tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            assertEquals(sourceCode, expected.getTokenClass(i), tokens.getTokenClass(i));
+            assertEquals(sourceCode, expected.getValue(i), tokens.getValue(i));
+            assertEquals(sourceCode, expected.getLineNum(i), tokens.getLineNum(i));
+            assertEquals(sourceCode, expected.getColumnNum(i), tokens.getColumnNum(i));
+        }
+    }
+
+    @Test
+    public void plainSourceTest() {
+        StringBuilder sourceCode = new StringBuilder("include io;\n");
+        for (int i = 0; i < 2000; i++) {
+            sourceCode.append("    int x").append(i).append(" = ").append(i).append(".5;\n");
+        }
+
+        TokenStream expected = new Lexer(sourceCode.toString()).tokenizeCompact();
+        TokenStream tokens = ParallelLexer.tokenize(sourceCode.toString(), ForkJoinPool.commonPool(), 100);
+
+        assertSameTokens(sourceCode.toString(), expected, tokens);
+    }
+
+    @Test
+    public void chunkEdgesInsideTokensTest() {
+        String[] lines = new String[] {
+            "int x = 1;\n", "str s = \"one\ntwo\nthree\";\n", "// a \"quoted\" comment\n", "\"\n// not a comment\n\"\n",
+            "x = x + 1; // tail \" quote\n", "\n", "\r\n", "print(\"a\", b);\n", "while (x == true) {\n", "}\n"
+        };
+
+        Random random = new Random(7);
+        for (int n = 0; n < 200; n++) {
+            StringBuilder sourceCode = new StringBuilder();
+            int count = 1 + random.nextInt(60);
+            for (int i = 0; i < count; i++) {
+                sourceCode.append(lines[random.nextInt(lines.length)]);
+            }
+
+            TokenStream expected = new Lexer(sourceCode.toString()).tokenizeCompact();
+            TokenStream tokens = ParallelLexer.tokenize(sourceCode.toString(), ForkJoinPool.commonPool(), 1 + random.nextInt(40));
+
+            assertSameTokens(sourceCode.toString(), expected, tokens);
+        }
+    }
+
+    @Test
+    public void stopsAtUnknownCharTest() {
+        String sourceCode = "int a = 1;\nint b = 2;\n#\nint c = 3;\nint d = 4;\n";
+
+        TokenStream expected = new Lexer(sourceCode).tokenizeCompact();
+        TokenStream tokens = ParallelLexer.tokenize(sourceCode, ForkJoinPool.commonPool(), 5);
+
+        assertSameTokens(sourceCode, expected, tokens);
+    }
+}
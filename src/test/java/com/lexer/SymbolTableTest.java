@@ -0,0 +1,118 @@
+package com.lexer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class SymbolTableTest {
+
+    @Test
+    public void internTest() {
+        SymbolTable symbols = new SymbolTable();
+
+        assertEquals(0, symbols.intern("x"));
+        assertEquals(1, symbols.intern("y"));
+        assertEquals(0, symbols.intern(new StringBuilder("x")));
+        assertEquals("y", symbols.name(1));
+        assertEquals(2, symbols.size());
+
+        // enough names to grow every stripe
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(i + 2, symbols.intern("name" + i));
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(i + 2, symbols.intern("name" + i));
+            assertEquals("name" + i, symbols.name(i + 2));
+        }
+    }
+
+    @Test
+    public void lexerTest() {
+        String sourceCode = "int count = 0;\nwhile (count < limit) { count = count + step; }\n";
+        SymbolTable symbols = new SymbolTable();
+
+        for (Lexer.Engine engine : Lexer.Engine.values()) {
+            Lexer lexer = new Lexer(sourceCode);
+            lexer.setEngine(engine);
+            lexer.setSymbolTable(symbols);
+            List<Token> tokens = lexer.tokenize();
+
+            assertEquals(0, tokens.get(1).getSymbol());
+            assertEquals(1, tokens.get(9).getSymbol());
+            assertEquals(2, tokens.get(16).getSymbol());
+            assertEquals(tokens.get(1).getSymbol(), tokens.get(14).getSymbol());
+            assertSame(tokens.get(1).getValue(), tokens.get(14).getValue());
+            assertEquals(-1, tokens.get(0).getSymbol());
+
+            lexer = Lexer.fromUtf8(sourceCode.getBytes());
+            lexer.setEngine(engine);
+            lexer.setSymbolTable(symbols);
+            TokenStream stream = lexer.tokenizeCompact();
+
+            for (int i = 0; i < stream.size(); i++) {
+                assertEquals(tokens.get(i).getSymbol(), stream.getSymbol(i));
+            }
+            assertEquals(0, stream.get(12).getSymbol());
+        }
+
+        assertEquals(3, symbols.size());
+        assertEquals(-1, new Lexer(sourceCode).tokenizeCompact().getSymbol(1));
+
+        Lexer lexer = new Lexer(sourceCode);
+        lexer.setSymbolTable(symbols);
+        TokenLookahead lookahead = new TokenLookahead(lexer);
+        assertEquals(0, lookahead.getSymbol(1));
+        assertEquals(-1, lookahead.getSymbol(2));
+    }
+
+    @Test
+    public void concurrentTest() throws Exception {
+        SymbolTable symbols = new SymbolTable();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Future<int[]>> results = new ArrayList<Future<int[]>>();
+            for (int t = 0; t < 8; t++) {
+                int seed = t;
+                results.add(executor.submit(() -> {
+                    int[] ids = new int[5000];
+                    for (int i = 0; i < ids.length; i++) {
+                        // every thread visits the names in another order
+                        int name = (i * 7 + seed * 613) % ids.length;
+                        ids[name] = symbols.intern("s" + name);
+                    }
+
+                    return ids;
+                }));
+            }
+
+            int[] first = results.get(0).get();
+            for (Future<int[]> result : results) {
+                int[] ids = result.get();
+                for (int i = 0; i < ids.length; i++) {
+                    assertEquals(first[i], ids[i]);
+                    assertEquals("s" + i, symbols.name(ids[i]));
+                }
+            }
+
+            assertEquals(5000, symbols.size());
+        } finally {
+            executor.shutdown();
+        }
+
+        boolean[] seen = new boolean[symbols.size()];
+        for (int i = 0; i < 5000; i++) {
+            seen[symbols.intern("s" + i)] = true;
+        }
+        for (boolean id : seen) {
+            assertTrue(id);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.lexer;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TokenCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static long entryCount(Path directory) throws Exception {
+        return Files.list(directory).filter(path -> path.toString().endsWith(TokenCache.SUFFIX)).count();
+    }
+
+    @Test
+    public void warmRunTest() throws Exception {
+        Path directory = this.folder.getRoot().toPath();
+        Path source = directory.resolve("main.pll");
+        Files.write(source, "include io;\r\nfunction main() : int {\n  str s = \"h\u00e9llo\";\n  return 42;\n}\n".getBytes("UTF-8"));
+
+        TokenCache cache = new TokenCache(directory.resolve("tokens"), 1 << 20);
+        TokenStream cold = cache.tokenize(source);
+        TokenStream warm = cache.tokenize(source);
+
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(cold.size(), warm.size());
+
+        for (int i = 0; i < cold.size(); i++) {
+            assertEquals(cold.getTokenClass(i), warm.getTokenClass(i));
+            assertEquals(cold.getValue(i), warm.getValue(i));
+            assertEquals(cold.getOffset(i), warm.getOffset(i));
+            assertEquals(cold.getEnd(i), warm.getEnd(i));
+            assertEquals(cold.getLineNum(i), warm.getLineNum(i));
+            assertEquals(cold.getColumnNum(i), warm.getColumnNum(i));
+        }
+        assertEquals("h\u00e9llo", warm.get(13).getValue());
+        assertEquals(42, warm.getLong(16));
+
+        // another cache over the same directory, as in the next build
+        TokenCache next = new TokenCache(directory.resolve("tokens"), 1 << 20);
+        BatchLexer.Result result = new BatchLexer(ForkJoinPool.commonPool(),
+            Collections.<Path>emptyList(), next).lex(Arrays.asList(source));
+        assertEquals(1, next.getHits());
+        assertEquals(0, next.getMisses());
+        assertEquals(cold.size(), result.getTokens().get(source.toAbsolutePath().normalize()).size());
+
+        Files.write(source, "int a = 1;".getBytes("UTF-8"));
+        assertEquals(6, cache.tokenize(source).size());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void corruptEntryTest() throws Exception {
+        Path directory = this.folder.getRoot().toPath();
+        Path source = directory.resolve("main.pll");
+        Files.write(source, "int a = 1;".getBytes("UTF-8"));
+
+        TokenCache cache = new TokenCache(directory.resolve("tokens"), 1 << 20);
+        Path entry = directory.resolve("tokens").resolve(TokenCache.key(Files.readAllBytes(source)) + TokenCache.SUFFIX);
+        ByteBuffer stored = TokenCache.write(cache.tokenize(source));
+
+        // token count, line count and text length out of range
+        for (int field = 8; field < 20; field += 4) {
+            for (int value : new int[] { -1, Integer.MAX_VALUE, 1 << 20 }) {
+                ByteBuffer corrupt = ByteBuffer.allocate(stored.remaining()).put(stored.duplicate());
+                corrupt.putInt(field, value);
+                Files.write(entry, corrupt.array());
+
+                try {
+                    TokenCache.read(ByteBuffer.wrap(corrupt.array()));
+                    fail();
+                } catch (IllegalArgumentException e) {
+                    // header does not fit
+                }
+
+                assertEquals(6, cache.tokenize(source).size());
+            }
+        }
+
+        assertEquals(0, cache.getHits());
+        assertEquals(10, cache.getMisses());
+    }
+
+    @Test
+    public void evictionTest() throws Exception {
+        Path directory = this.folder.getRoot().toPath();
+        Path entries = directory.resolve("tokens");
+
+        Path[] sources = new Path[3];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = directory.resolve("file" + i + ".pll");
+            Files.write(sources[i], ("int value" + i + " = " + i + "; str name = \"file\";").getBytes("UTF-8"));
+        }
+
+        // room for two entries of the same size
+        long entrySize = TokenCache.write(new Lexer("int value0 = 0; str name = \"file\";").tokenizeCompact()).remaining();
+        TokenCache cache = new TokenCache(entries, entrySize * 5 / 2);
+
+        cache.tokenize(sources[0]);
+        cache.tokenize(sources[1]);
+        assertEquals(2, entryCount(entries));
+
+        // file0 is the older entry until it is used again
+        Path first = entries.resolve(TokenCache.key(Files.readAllBytes(sources[0])) + TokenCache.SUFFIX);
+        Path second = entries.resolve(TokenCache.key(Files.readAllBytes(sources[1])) + TokenCache.SUFFIX);
+        Files.setLastModifiedTime(first, FileTime.fromMillis(1000));
+        Files.setLastModifiedTime(second, FileTime.fromMillis(2000));
+        cache.tokenize(sources[0]);
+
+        cache.tokenize(sources[2]);
+        assertEquals(2, entryCount(entries));
+        assertTrue(Files.exists(first));
+        assertFalse(Files.exists(second));
+
+        // a cache over entries of an earlier run counts them when it starts
+        TokenCache next = new TokenCache(entries, entrySize * 3 / 2);
+        next.tokenize(sources[1]);
+        assertEquals(1, entryCount(entries));
+        assertTrue(Files.exists(second));
+    }
+}
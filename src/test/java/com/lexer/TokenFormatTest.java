@@ -0,0 +1,73 @@
+package com.lexer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+public class TokenFormatTest {
+    private static final String SOURCE_CODE = 
+        "include io;\n"
+        + "function main() : int {\n"
+        + "    str s = \"h\u00e9llo\";\r\n"
+        + "    int count = 0;\n\n"
+        + "    while (count < 10) { count += 1; }\n"
+        + "    return count;\n"
+        + "}\n";
+
+    @Test
+    public void roundTripTest() {
+        ArrayList<Token> expected = new Lexer(SOURCE_CODE).tokenize();
+        ArrayList<Token> tokens = TokenFormat.decode(TokenFormat.encode(expected));
+
+        assertEquals(expected.size(), tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            assertEquals(expected.get(i).getTokenClass(), tokens.get(i).getTokenClass());
+            assertEquals(expected.get(i).getValue(), tokens.get(i).getValue());
+            assertEquals(expected.get(i).getOffset(), tokens.get(i).getOffset());
+            assertEquals(expected.get(i).getLineNum(), tokens.get(i).getLineNum());
+            assertEquals(expected.get(i).getColumnNum(), tokens.get(i).getColumnNum());
+        }
+
+        // both forms of the lexer output encode the same
+        assertEquals(TokenFormat.encode(expected), TokenFormat.encode(new Lexer(SOURCE_CODE).tokenizeCompact()));
+    }
+
+    @Test
+    public void readerTest() {
+        ByteBuffer encoded = TokenFormat.encode(new Lexer(SOURCE_CODE).tokenize());
+        ByteBuffer direct = ByteBuffer.allocateDirect(encoded.remaining() + 3);
+        direct.position(3);
+        direct.put(encoded.duplicate());
+        direct.position(3);
+
+        TokenFormat.Reader reader = TokenFormat.read(direct);
+        String count = null;
+        int counts = 0;
+
+        while (reader.next()) {
+            if (reader.getTokenClass() == TokenClass.IDENTIFIER && reader.getValue().equals("count")) {
+                if (count != null) {
+                    assertSame(count, reader.getValue());
+                }
+                count = reader.getValue();
+                counts++;
+            }
+        }
+
+        assertEquals(4, counts);
+        assertEquals(3, direct.position());
+        assertFalse(reader.next());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongVersionTest() {
+        ByteBuffer encoded = TokenFormat.encode(new Lexer("int a;").tokenize());
+        encoded.put(4, (byte) (TokenFormat.VERSION + 1));
+
+        TokenFormat.read(encoded);
+    }
+}
@@ -0,0 +1,171 @@
+package com.lexer;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+public class TokenLookaheadTest {
+
+    private static final String SOURCE_CODE =
+        "include io;\nfunction f(x) : int {\n  if (x >= 10) { return x * 2.5; } // big\n  return \"no\";\n}\n";
+
+    @Test
+    public void peekConsumeTest() {
+        List<Token> expected = new Lexer(SOURCE_CODE).tokenize();
+
+        // the reader source drops chars long before the tokens are consumed
+        Lexer[] lexers = new Lexer[] {
+            new Lexer(SOURCE_CODE), new Lexer(new StringReader(SOURCE_CODE), 4), Lexer.fromUtf8(SOURCE_CODE.getBytes())
+        };
+
+        for (Lexer lexer : lexers) {
+            TokenLookahead tokens = new TokenLookahead(lexer, 4);
+
+            for (int i = 0; i < expected.size(); i++) {
+                for (int k = 0; k < 4; k++) {
+                    Token token = expected.get(Math.min(i + k, expected.size() - 1));
+                    assertEquals(token.getTokenClass(), tokens.peek(k));
+                    assertEquals(token.getValue(), tokens.getValue(k));
+                    assertTrue(tokens.valueEquals(k, token.getValue()));
+                    assertEquals(token.getLineNum(), tokens.getLineNum(k));
+                    assertEquals(token.getColumnNum(), tokens.getColumnNum(k));
+                }
+
+                assertEquals(expected.get(i).getTokenClass(), tokens.consume());
+            }
+
+            assertEquals(TokenClass.END_OF_INPUT, tokens.consume());
+            assertEquals(expected.size() - 1, tokens.index());
+        }
+    }
+
+    @Test
+    public void valuesTest() {
+        TokenLookahead tokens = new TokenLookahead(new Lexer(new StringReader("x = 42 + 2.5;"), 2));
+
+        assertTrue(tokens.valueEquals(0, "x"));
+        assertFalse(tokens.valueEquals(0, "y"));
+        assertFalse(tokens.valueEquals(1, "x"));
+        assertEquals(42, tokens.getLong(2));
+        assertEquals(2.5, tokens.getDouble(4), 0);
+
+        try {
+            tokens.getLong(4);
+            fail();
+        } catch (IllegalStateException e) {
+            // a DOUBLE token
+        }
+
+        try {
+            tokens.peek(TokenLookahead.DEFAULT_CAPACITY);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // more than the capacity
+        }
+    }
+
+    @Test
+    public void markResetTest() {
+        List<Token> expected = new Lexer(SOURCE_CODE).tokenize();
+        TokenLookahead tokens = new TokenLookahead(new Lexer(new StringReader(SOURCE_CODE), 4), 2);
+
+        tokens.consume();
+        tokens.mark();
+        tokens.consume();
+        tokens.mark();
+
+        // past the capacity of the ring
+        for (int i = 0; i < 10; i++) {
+            tokens.consume();
+        }
+        assertEquals(expected.get(12).getTokenClass(), tokens.peek());
+
+        tokens.reset();
+        assertEquals(2, tokens.index());
+        assertEquals(expected.get(2).getValue(), tokens.getValue(0));
+
+        for (int i = 0; i < 20; i++) {
+            tokens.consume();
+        }
+
+        tokens.reset();
+        assertEquals(1, tokens.index());
+        assertEquals(expected.get(1).getValue(), tokens.getValue(0));
+
+        tokens.mark();
+        tokens.consume();
+        tokens.release();
+        assertEquals(2, tokens.index());
+
+        try {
+            tokens.reset();
+            fail();
+        } catch (IllegalStateException e) {
+            // no mark left
+        }
+    }
+
+    @Test
+    public void allocationTest() {
+        java.lang.management.ThreadMXBean threads = java.lang.management.ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return;     // allocations can not be measured on this JVM
+        }
+
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        long thread = Thread.currentThread().getId();
+
+        // endless source of short lines, the line index only keeps the lines of the buffer
+        String snippet = "f(x, \"no\") * 10 + y / 2.5\n";
+        for (Lexer.Engine engine : Lexer.Engine.values()) {
+            Reader reader = new Reader() {
+                private int position = 0;
+
+                @Override
+                public int read(char[] buffer, int offset, int length) {
+                    for (int i = 0; i < length; i++) {
+                        buffer[offset + i] = snippet.charAt(this.position++ % snippet.length());
+                    }
+
+                    return length;
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+
+            Lexer lexer = new Lexer(reader);
+            lexer.setEngine(engine);
+            TokenLookahead tokens = new TokenLookahead(lexer);
+            long sum = 0;
+
+            for (int i = 0; i < 100000; i++) {
+                sum += tokens.peek(3).ordinal() + tokens.consume().ordinal();
+            }
+
+            // the cost of measuring itself
+            long start = allocations.getThreadAllocatedBytes(thread);
+            long overhead = allocations.getThreadAllocatedBytes(thread) - start;
+
+            start = allocations.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < 100000; i++) {
+                sum += tokens.peek(3).ordinal() + tokens.consume().ordinal();
+            }
+            long allocated = allocations.getThreadAllocatedBytes(thread) - start;
+
+            assertTrue(sum > 0);
+            // nothing per token, a compiler deoptimizing may still allocate a few bytes once
+            assertTrue(engine + " allocated " + allocated, allocated - overhead < 1024);
+            assertTrue(tokens.getLineNum(0) > 10000);
+            assertEquals(tokens.getOffset(0) / snippet.length() + 1, tokens.getLineNum(0));
+            assertEquals(tokens.getOffset(0) % snippet.length() + 1, tokens.getColumnNum(0));
+        }
+    }
+}
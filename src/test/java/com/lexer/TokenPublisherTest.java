@@ -0,0 +1,150 @@
+package com.lexer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class TokenPublisherTest {
+
+    /** Keeps everything it is given, requests nothing by itself
+     */
+    private static class Collector implements Flow.Subscriber<Token[]> {
+        Flow.Subscription subscription;
+        final List<Token[]> batches = new ArrayList<Token[]>();
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile boolean completed = false;
+        volatile Throwable error;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Token[] batch) {
+            this.batches.add(batch);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error = error;
+            this.done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            this.completed = true;
+            this.done.countDown();
+        }
+    }
+
+    private static String sourceCode(int lines) {
+        StringBuilder sourceCode = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            sourceCode.append("int x").append(i).append(" = ").append(i).append(";\n");
+        }
+
+        return sourceCode.toString();
+    }
+
+    @Test
+    public void allTokensTest() throws Exception {
+        String sourceCode = sourceCode(500);
+        List<Token> expected = new Lexer(sourceCode).tokenize();
+
+        Collector collector = new Collector();
+        new TokenPublisher(new Lexer(sourceCode), 64, ForkJoinPool.commonPool()).subscribe(collector);
+        collector.subscription.request(Long.MAX_VALUE);
+
+        assertTrue(collector.done.await(10, TimeUnit.SECONDS));
+        assertTrue(collector.completed);
+
+        List<Token> tokens = new ArrayList<Token>();
+        for (int i = 0; i < collector.batches.size(); i++) {
+            Token[] batch = collector.batches.get(i);
+            assertTrue(i == collector.batches.size() - 1 ? batch.length <= 64 : batch.length == 64);
+
+            for (Token token : batch) {
+                tokens.add(token);
+            }
+        }
+
+        assertEquals(expected.size(), tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            assertEquals(expected.get(i).getTokenClass(), tokens.get(i).getTokenClass());
+            assertEquals(expected.get(i).getValue(), tokens.get(i).getValue());
+            assertEquals(expected.get(i).getOffset(), tokens.get(i).getOffset());
+        }
+    }
+
+    @Test
+    public void demandTest() {
+        Lexer lexer = new Lexer(sourceCode(100));
+        Collector collector = new Collector();
+        new TokenPublisher(lexer, 10, Runnable::run).subscribe(collector);
+
+        // nothing is lexed before the first request
+        assertEquals(-1, lexer.getPosition());
+
+        collector.subscription.request(2);
+        assertEquals(2, collector.batches.size());
+        assertEquals(TokenClass.SEMICOLON, collector.batches.get(1)[9].getTokenClass());
+        assertEquals(collector.batches.get(1)[9].getOffset(), lexer.getPosition());
+
+        collector.subscription.request(1);
+        assertEquals(3, collector.batches.size());
+        assertEquals(false, collector.completed);
+
+        collector.subscription.request(Long.MAX_VALUE);
+        assertTrue(collector.completed);
+
+        Token[] last = collector.batches.get(collector.batches.size() - 1);
+        assertEquals(TokenClass.END_OF_INPUT, last[last.length - 1].getTokenClass());
+    }
+
+    @Test
+    public void cancelTest() {
+        Lexer lexer = new Lexer(sourceCode(1000));
+        Collector collector = new Collector() {
+            @Override
+            public void onNext(Token[] batch) {
+                super.onNext(batch);
+                this.subscription.cancel();
+            }
+        };
+        new TokenPublisher(lexer, 8, Runnable::run).subscribe(collector);
+
+        collector.subscription.request(Long.MAX_VALUE);
+        int position = lexer.getPosition();
+
+        collector.subscription.request(5);
+
+        assertEquals(1, collector.batches.size());
+        assertEquals(position, lexer.getPosition());
+        assertEquals(false, collector.completed);
+        assertNull(collector.error);
+    }
+
+    @Test
+    public void errorsTest() {
+        TokenPublisher publisher = new TokenPublisher(new Lexer("int x;"), 4, Runnable::run);
+
+        Collector collector = new Collector();
+        publisher.subscribe(collector);
+        collector.subscription.request(0);
+        assertTrue(collector.error instanceof IllegalArgumentException);
+        assertEquals(0, collector.batches.size());
+
+        Collector second = new Collector();
+        publisher.subscribe(second);
+        assertTrue(second.error instanceof IllegalStateException);
+    }
+}
@@ -0,0 +1,93 @@
+package com.lexer;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+public class TokenStoreTest {
+
+    private static String sourceCode(int lines) {
+        StringBuilder sourceCode = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            sourceCode.append("double x").append(i).append(" = ").append(i).append(".5;\n");
+        }
+
+        return sourceCode.toString();
+    }
+
+    private static void assertSameTokens(TokenStream expected, TokenStore tokens) {
+        assertEquals(expected.size(), tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            assertEquals(expected.getTokenClass(i), tokens.getTokenClass(i));
+            assertEquals(expected.getValue(i), tokens.getValue(i));
+            assertEquals(expected.getOffset(i), tokens.getOffset(i));
+            assertEquals(expected.getEnd(i), tokens.getEnd(i));
+            assertEquals(expected.getLineNum(i), tokens.getLineNum(i));
+            assertEquals(expected.getColumnNum(i), tokens.getColumnNum(i));
+        }
+    }
+
+    @Test
+    public void directMemoryTest() throws Exception {
+        // more tokens than one segment holds
+        String sourceCode = sourceCode(20000);
+        TokenStream expected = new Lexer(sourceCode).tokenizeCompact();
+
+        Lexer lexer = new Lexer(sourceCode);
+        lexer.setEngine(Lexer.Engine.TABLE_DRIVEN);
+        try (TokenStore tokens = lexer.tokenizeOffHeap()) {
+            assertTrue(tokens.size() > 1 << TokenStore.SEGMENT_SHIFT);
+            assertSameTokens(expected, tokens);
+
+            assertEquals(12345.5, tokens.getDouble(12345 * 5 + 3), 0);
+
+            // resetting the lexer leaves the stored values alone
+            lexer.reset("int y;");
+            assertEquals("x7", tokens.getValue(7 * 5 + 1));
+        }
+    }
+
+    @Test
+    public void fileBackedTest() throws Exception {
+        byte[] sourceCode = ("str s = \"h\u00e9llo\";\nint n = 42;\n" + sourceCode(100)).getBytes("UTF-8");
+        TokenStream expected = Lexer.fromUtf8(sourceCode).tokenizeCompact();
+
+        Path file = Files.createTempFile("tokens", ".bin");
+        try (TokenStore tokens = Lexer.fromUtf8(ByteBuffer.wrap(sourceCode)).tokenizeOffHeap(file)) {
+            assertSameTokens(expected, tokens);
+            assertEquals("h\u00e9llo", tokens.getValue(3));
+            assertEquals(42, tokens.getLong(8));
+        } finally {
+            assertEquals((long) TokenStore.RECORD_SIZE << TokenStore.SEGMENT_SHIFT, Files.size(file));
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void closedTest() throws Exception {
+        TokenStore tokens = new Lexer("int x;").tokenizeOffHeap();
+        assertEquals(TokenClass.KEYWORD_INT, tokens.getTokenClass(0));
+
+        tokens.close();
+        tokens.close();
+
+        try {
+            tokens.getTokenClass(0);
+            fail();
+        } catch (IllegalStateException e) {
+            // closed
+        }
+
+        try {
+            tokens.accept(TokenClass.SEMICOLON, 0, 0, 0, 0);
+            fail();
+        } catch (IllegalStateException e) {
+            // closed
+        }
+    }
+}
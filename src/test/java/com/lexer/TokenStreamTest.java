@@ -0,0 +1,67 @@
+package com.lexer;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class TokenStreamTest {
+    private static final String SOURCE_CODE = 
+        "include io;\n"
+        + "// main function\n"
+        + "function main() : int {\n"
+        + "    print(\"Hello World!\");\n"
+        + "    double b = 2.3;\n"
+        + "    return 1;\n"
+        + "}\n";
+
+    @Test
+    public void compactMatchesTokenizeTest() {
+        ArrayList<Token> expected = new Lexer(SOURCE_CODE).tokenize();
+        TokenStream stream = new Lexer(SOURCE_CODE).tokenizeCompact();
+
+        assertEquals(expected.size(), stream.size());
+        for (int i = 0; i < stream.size(); i++) {
+            assertEquals(expected.get(i).getTokenClass(), stream.getTokenClass(i));
+            assertEquals(expected.get(i).getValue(), stream.getValue(i));
+            assertEquals(expected.get(i).getLineNum(), stream.getLineNum(i));
+            assertEquals(expected.get(i).getColumnNum(), stream.getColumnNum(i));
+        }
+    }
+
+    @Test
+    public void streamedCompactMatchesTokenizeTest() {
+        ArrayList<Token> expected = new Lexer(SOURCE_CODE).tokenize();
+        List<Token> tokens = new Lexer(new StringReader(SOURCE_CODE), 4).tokenizeCompact().asList();
+
+        assertEquals(expected.size(), tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            assertEquals(expected.get(i).getTokenClass(), tokens.get(i).getTokenClass());
+            assertEquals(expected.get(i).getValue(), tokens.get(i).getValue());
+        }
+    }
+
+    @Test
+    public void cursorTest() {
+        TokenStream stream = new Lexer("x = \"abc\";").tokenizeCompact();
+        TokenStream.Cursor cursor = stream.cursor();
+
+        assertTrue(cursor.next());
+        assertEquals(TokenClass.IDENTIFIER, cursor.getTokenClass());
+        assertTrue(cursor.next());
+        assertEquals(TokenClass.OP_ASSIGN, cursor.getTokenClass());
+        assertTrue(cursor.next());
+        assertEquals(TokenClass.STRING, cursor.getTokenClass());
+        assertEquals("abc", cursor.getValue());
+        assertEquals("abc", stream.getText().subSequence(cursor.getStart(), cursor.getStart() + cursor.getLength()).toString());
+        assertTrue(cursor.next());
+        assertEquals(TokenClass.SEMICOLON, cursor.getTokenClass());
+        assertTrue(cursor.next());
+        assertEquals(TokenClass.END_OF_INPUT, cursor.getTokenClass());
+        assertFalse(cursor.next());
+    }
+}